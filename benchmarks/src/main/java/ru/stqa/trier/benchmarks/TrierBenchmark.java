@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.stqa.trier.Backoff;
+import ru.stqa.trier.CounterBasedTrier;
+import ru.stqa.trier.LimitExceededException;
+import ru.stqa.trier.TimeBasedTrier;
+import ru.stqa.trier.Trier;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Per-call cost of the four tryTo overloads, on the success path (the first attempt succeeds) and on
+ * the failure path (every attempt is rejected by isExceptionIgnored or isResultIgnored and the call
+ * ends with LimitExceededException). Sleeping is virtual, so only the trier itself is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrierBenchmark {
+
+  private static final int ATTEMPTS = 3;
+  private static final RuntimeException FAILURE = new NumberFormatException();
+
+  @Param({"counter", "time"})
+  public String trier;
+
+  @Param({"true", "false"})
+  public boolean stackTrace;
+
+  private Trier<Object> succeeding;
+  private Trier<Object> failing;
+
+  private final Runnable runnableOk = () -> {};
+  private final Runnable runnableFail = () -> { throw FAILURE; };
+  private final Supplier<Object> supplierOk = () -> "OK";
+  private final Supplier<Object> supplierFail = () -> "";
+  private final Consumer<Object> consumerOk = par -> {};
+  private final Consumer<Object> consumerFail = par -> { throw FAILURE; };
+  private final Function<Object, Object> functionOk = par -> par;
+  private final Function<Object, Object> functionFail = par -> null;
+
+  @Setup
+  public void setUp() {
+    VirtualClock clock = new VirtualClock();
+    succeeding = create(clock);
+    failing = create(clock).ignoring(IllegalStateException.class, ArrayIndexOutOfBoundsException.class,
+      IllegalArgumentException.class);
+    if (! stackTrace) {
+      failing = failing.withoutStackTrace();
+    }
+  }
+
+  private Trier<Object> create(VirtualClock clock) {
+    switch (trier) {
+      case "counter":
+        return new CounterBasedTrier<>(ATTEMPTS, clock, clock, Backoff.fixed(1));
+      case "time":
+        return new TimeBasedTrier<>(ATTEMPTS - 1, clock, clock, Backoff.fixed(1));
+      default:
+        throw new IllegalArgumentException(trier);
+    }
+  }
+
+  @Benchmark
+  public Object runnableSuccess() throws Exception {
+    succeeding.tryTo(runnableOk);
+    return null;
+  }
+
+  @Benchmark
+  public Object supplierSuccess() throws Exception {
+    return succeeding.tryTo(supplierOk);
+  }
+
+  @Benchmark
+  public Object consumerSuccess() throws Exception {
+    succeeding.tryTo(consumerOk, this);
+    return null;
+  }
+
+  @Benchmark
+  public Object functionSuccess() throws Exception {
+    return succeeding.tryTo(functionOk, this);
+  }
+
+  @Benchmark
+  public Object runnableLimitExceeded() throws InterruptedException {
+    try {
+      failing.tryTo(runnableFail);
+      return null;
+    } catch (LimitExceededException e) {
+      return e;
+    }
+  }
+
+  @Benchmark
+  public Object supplierLimitExceeded() throws InterruptedException {
+    try {
+      return failing.tryTo(supplierFail);
+    } catch (LimitExceededException e) {
+      return e;
+    }
+  }
+
+  @Benchmark
+  public Object consumerLimitExceeded() throws InterruptedException {
+    try {
+      failing.tryTo(consumerFail, this);
+      return null;
+    } catch (LimitExceededException e) {
+      return e;
+    }
+  }
+
+  @Benchmark
+  public Object functionLimitExceeded() throws InterruptedException {
+    try {
+      return failing.tryTo(functionFail, this);
+    } catch (LimitExceededException e) {
+      return e;
+    }
+  }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier.benchmarks;
+
+import ru.stqa.trier.Clock;
+import ru.stqa.trier.Sleeper;
+
+/**
+ * Clock and sleeper that never block: sleeping just moves the virtual time forward.
+ */
+class VirtualClock implements Clock, Sleeper {
+
+  private long now = 0;
+
+  @Override
+  public long now() {
+    return now;
+  }
+
+  @Override
+  public void sleep(long duration) {
+    now += duration;
+  }
+}
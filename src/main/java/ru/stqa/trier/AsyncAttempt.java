@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A single asynchronous retry loop. Each attempt runs as a task on the timer, a failed attempt
+ * schedules the next one instead of sleeping, so no thread is held between attempts. An attempt is
+ * finished when the stage returned by the action completes, the stage is never waited for.
+ */
+final class AsyncAttempt<T> implements Runnable {
+
+  /**
+   * Runs attempts after a delay, either a {@link java.util.concurrent.ScheduledExecutorService} or
+   * a {@link PollingService}.
+   */
+  @FunctionalInterface
+  interface Timer {
+    void schedule(AsyncAttempt<?> attempt, long delayNanos);
+  }
+
+  private final Trier<?> trier;
+  private final Supplier<? extends CompletionStage<T>> action;
+  private final Predicate<? super T> resultIgnored;
+  private final Object description;
+  private final Trier.Schedule schedule;
+  private final TrierScope scope;
+  private final Timer timer;
+
+  private final CompletableFuture<T> future = new CompletableFuture<>();
+  private Throwable lastException;
+  private int attempt;
+  private long started;
+
+  AsyncAttempt(Trier<?> trier, Supplier<? extends CompletionStage<T>> action, Predicate<? super T> resultIgnored,
+               Object description, Timer timer) {
+    this.trier = trier;
+    this.action = action;
+    this.resultIgnored = resultIgnored;
+    this.description = description;
+    Trier.Schedule schedule = trier.newSchedule();
+    // the scope of the caller is carried into the attempts, which run on other threads
+    this.scope = TrierScope.open(schedule.timeLeftNanos());
+    this.schedule = scope != null ? scope.bound(schedule) : schedule;
+    this.timer = timer;
+  }
+
+  CompletableFuture<T> start() {
+    submit(0);
+    return future;
+  }
+
+  @Override
+  public void run() {
+    if (future.isDone()) {
+      // cancelled by the caller
+      return;
+    }
+    try {
+      attempt();
+    } catch (Throwable t) {
+      // a listener failed, nobody else would complete the future
+      future.completeExceptionally(t);
+    }
+  }
+
+  private void attempt() {
+    if (attempt == 0 && schedule.isExhausted()) {
+      future.completeExceptionally(trier.gaveUp(schedule.limitExceeded(null, description, null)));
+      return;
+    }
+    if (! trier.attemptAllowed()) {
+      future.completeExceptionally(trier.gaveUp(schedule.limitExceeded(Trier.CIRCUIT_OPEN, description, lastException)));
+      return;
+    }
+    started = trier.attemptStarted(description, ++attempt);
+    CompletionStage<T> stage;
+    TrierScope previous = scope != null ? scope.enter() : null;
+    schedule.attemptStarted();
+    try {
+      stage = action.get();
+    } catch (Throwable t) {
+      onFailure(t);
+      return;
+    } finally {
+      if (scope != null) {
+        TrierScope.restore(previous);
+      }
+    }
+    if (stage == null) {
+      onFailure(new NullPointerException("Action returned null instead of a CompletionStage"));
+      return;
+    }
+    stage.whenComplete((res, t) -> {
+      if (t != null) {
+        onFailure(unwrap(t));
+      } else {
+        onResult(res);
+      }
+    });
+  }
+
+  private void onResult(T res) {
+    schedule.attemptFinished();
+    try {
+      if (! resultIgnored.test(res)) {
+        trier.succeeded(description, attempt, started);
+        future.complete(res);
+        return;
+      }
+      trier.resultRejected(description, attempt, started, res);
+    } catch (Throwable t) {
+      future.completeExceptionally(t);
+      return;
+    }
+    retry();
+  }
+
+  private void onFailure(Throwable t) {
+    schedule.attemptFinished();
+    try {
+      boolean ignored = trier.isExceptionIgnored(t);
+      trier.attemptFailed(description, attempt, started, t, ignored);
+      if (! ignored) {
+        future.completeExceptionally(t);
+        return;
+      }
+    } catch (Throwable e) {
+      future.completeExceptionally(e);
+      return;
+    }
+    lastException = t;
+    retry();
+  }
+
+  private void retry() {
+    long delay;
+    try {
+      delay = schedule.nextDelayNanos(lastException);
+      if (delay < 0) {
+        future.completeExceptionally(trier.gaveUp(schedule.limitExceeded(null, description, lastException)));
+        return;
+      }
+      if (! trier.retryAllowed()) {
+        future.completeExceptionally(trier.gaveUp(schedule.limitExceeded(Trier.BUDGET_EXHAUSTED, description, lastException)));
+        return;
+      }
+      trier.sleeping(description, attempt, delay);
+    } catch (Throwable e) {
+      future.completeExceptionally(e);
+      return;
+    }
+    submit(delay);
+  }
+
+  private void submit(long delay) {
+    try {
+      timer.schedule(this, delay);
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Fails the attempt if it is still pending, used when the timer shuts down.
+   */
+  void abort(Throwable t) {
+    future.completeExceptionally(t);
+  }
+
+  private static Throwable unwrap(Throwable t) {
+    while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+      t = t.getCause();
+    }
+    return t;
+  }
+}
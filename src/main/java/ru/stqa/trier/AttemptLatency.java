@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cheap estimate of how long an attempt takes: an exponentially weighted moving average with
+ * weight 1/8 for the newest sample, kept multiplied by 8 to not lose precision.
+ */
+final class AttemptLatency {
+
+  private final AtomicLong scaledAverage = new AtomicLong(-1);
+
+  /**
+   * @param duration How long an attempt took, in milliseconds.
+   */
+  void record(long duration) {
+    long sample = Math.max(duration, 0);
+    scaledAverage.updateAndGet(avg -> avg < 0 ? sample << 3 : avg - (avg >> 3) + sample);
+  }
+
+  /**
+   * @return The expected duration of an attempt in milliseconds, or -1 if nothing is recorded.
+   */
+  long estimate() {
+    long avg = scaledAverage.get();
+    return avg < 0 ? -1 : avg >> 3;
+  }
+}
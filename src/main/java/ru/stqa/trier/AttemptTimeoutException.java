@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reported as the failure of an attempt that did not finish in the time given to it by a trier
+ * {@link Trier#timingOut(java.time.Duration, java.util.concurrent.Executor) timing out attempts}.
+ * Such failures are always ignored, the trier goes on with the next attempt if the limit allows.
+ */
+public class AttemptTimeoutException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final long timeout;
+
+  public AttemptTimeoutException(long timeout) {
+    super("Attempt timed out after " + TimeUnit.NANOSECONDS.toMillis(timeout) + " milliseconds");
+    this.timeout = timeout;
+  }
+
+  /**
+   * @return The time the attempt was given, in nanoseconds.
+   */
+  public long getTimeout() {
+    return timeout;
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Strategy to compute how long to sleep between attempts. Implementations are stateless, everything
+ * they need is passed as arguments, so one instance can be shared by any number of triers and calls.
+ */
+@FunctionalInterface
+public interface Backoff {
+
+  /**
+   * Computes the delay before the next attempt.
+   *
+   * @param attempt The number of attempts made so far, starting from 1.
+   * @param elapsed Time passed since the first attempt, in milliseconds.
+   * @param previousDelay The delay before the previous attempt, or 0 if this is the first delay.
+   * @param lastException The last ignored exception, or null if there was none.
+   * @return How long to sleep before the next attempt, in milliseconds.
+   */
+  long delay(int attempt, long elapsed, long previousDelay, Throwable lastException);
+
+  /**
+   * Same as {@link #delay(int, long, long, Throwable)}, but the delays are in nanoseconds. By default
+   * it converts the delay computed in milliseconds.
+   *
+   * @param previousDelay The delay before the previous attempt, in nanoseconds.
+   * @return How long to sleep before the next attempt, in nanoseconds.
+   */
+  default long delayNanos(int attempt, long elapsed, long previousDelay, Throwable lastException) {
+    return TimeUnit.MILLISECONDS.toNanos(
+      delay(attempt, elapsed, TimeUnit.NANOSECONDS.toMillis(previousDelay), lastException));
+  }
+
+  /**
+   * @param interval The delay between attempts, in milliseconds.
+   * @return A backoff that always waits the same time.
+   */
+  static Backoff fixed(long interval) {
+    Backoffs.checkNotNegative(interval);
+    return (attempt, elapsed, previousDelay, lastException) -> interval;
+  }
+
+  /**
+   * @param interval The delay between attempts, with nanosecond resolution.
+   * @return A backoff that always waits the same time.
+   */
+  static Backoff fixed(Duration interval) {
+    long nanos = interval.toNanos();
+    Backoffs.checkNotNegative(nanos);
+    long millis = nanos <= 0 ? 0 : (nanos - 1) / 1_000_000 + 1;
+    return new Backoff() {
+      @Override
+      public long delay(int attempt, long elapsed, long previousDelay, Throwable lastException) {
+        return millis;
+      }
+
+      @Override
+      public long delayNanos(int attempt, long elapsed, long previousDelay, Throwable lastException) {
+        return nanos;
+      }
+    };
+  }
+
+  /**
+   * @param initial The first delay, in milliseconds.
+   * @param increment How much to add to the delay after each attempt, in milliseconds.
+   * @return A backoff that grows the delay linearly.
+   */
+  static Backoff linear(long initial, long increment) {
+    Backoffs.checkNotNegative(initial);
+    Backoffs.checkNotNegative(increment);
+    return (attempt, elapsed, previousDelay, lastException) ->
+      Backoffs.saturatedAdd(initial, Backoffs.saturatedMultiply(increment, attempt - 1));
+  }
+
+  /**
+   * @param initial The first delay, in milliseconds.
+   * @param cap The maximum delay, in milliseconds.
+   * @return A backoff that doubles the delay after each attempt, but never waits longer than the cap.
+   */
+  static Backoff exponential(long initial, long cap) {
+    Backoffs.checkNotNegative(initial);
+    Backoffs.checkNotNegative(cap);
+    return (attempt, elapsed, previousDelay, lastException) -> Backoffs.exponentialDelay(initial, cap, attempt);
+  }
+
+  /**
+   * "Full jitter": a random delay between zero and the capped exponential delay. Spreads retries of
+   * many clients that failed at the same moment.
+   *
+   * @param base The first delay upper bound, in milliseconds.
+   * @param cap The maximum delay, in milliseconds.
+   * @return A randomized exponential backoff.
+   */
+  static Backoff fullJitter(long base, long cap) {
+    Backoffs.checkNotNegative(base);
+    Backoffs.checkNotNegative(cap);
+    return (attempt, elapsed, previousDelay, lastException) -> {
+      long bound = Backoffs.exponentialDelay(base, cap, attempt);
+      return bound == 0 ? 0 : ThreadLocalRandom.current().nextLong(bound);
+    };
+  }
+
+  /**
+   * "Decorrelated jitter": a random delay between the base and three times the previous delay,
+   * never longer than the cap.
+   *
+   * @param base The minimum delay, in milliseconds.
+   * @param cap The maximum delay, in milliseconds.
+   * @return A randomized backoff that depends on the previous delay rather than on the attempt number.
+   */
+  static Backoff decorrelatedJitter(long base, long cap) {
+    Backoffs.checkNotNegative(base);
+    Backoffs.checkNotNegative(cap);
+    return (attempt, elapsed, previousDelay, lastException) -> {
+      long upper = Math.min(cap, Backoffs.saturatedMultiply(Math.max(previousDelay, base), 3));
+      return upper <= base ? Math.min(base, cap) : ThreadLocalRandom.current().nextLong(base, upper);
+    };
+  }
+}
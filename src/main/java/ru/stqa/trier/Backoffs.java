@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+/**
+ * Overflow-safe arithmetic shared by the {@link Backoff} implementations.
+ */
+final class Backoffs {
+
+  private Backoffs() {}
+
+  static long exponentialDelay(long initial, long cap, int attempt) {
+    int shift = Math.min(Math.max(attempt - 1, 0), 62);
+    if (initial > (cap >> shift)) {
+      return cap;
+    }
+    return Math.min(cap, initial << shift);
+  }
+
+  static long saturatedAdd(long a, long b) {
+    long sum = a + b;
+    return sum < 0 ? Long.MAX_VALUE : sum;
+  }
+
+  static long saturatedMultiply(long a, long b) {
+    if (a != 0 && b > Long.MAX_VALUE / a) {
+      return Long.MAX_VALUE;
+    }
+    return a * b;
+  }
+
+  static void checkNotNegative(long value) {
+    if (value < 0) {
+      throw new IllegalArgumentException("Delay can't be negative: " + value);
+    }
+  }
+}
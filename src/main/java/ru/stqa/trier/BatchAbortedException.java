@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.List;
+
+/**
+ * Thrown by {@link Trier#tryToAll(java.util.Collection, java.util.function.Function)} when an
+ * element throws an exception that is not ignored. The cause is that exception, the other elements
+ * are still tried until they succeed or the limit is exceeded.
+ */
+public class BatchAbortedException extends BatchLimitExceededException {
+
+  private static final long serialVersionUID = 1L;
+
+  static final String ABORTED = "Aborted after %1$d attempts to perform action %4$s";
+
+  BatchAbortedException(LimitExceededException e, List<?> results, List<?> failedElements,
+                        boolean writableStackTrace) {
+    super(e, results, failedElements, writableStackTrace);
+  }
+}
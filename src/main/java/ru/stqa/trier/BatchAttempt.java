@@ -0,0 +1,191 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Retry loop over a batch of elements. Each round attempts all pending elements, possibly in
+ * parallel, then sleeps once and re-attempts only the elements that failed.
+ */
+final class BatchAttempt<X, T, R extends X> {
+
+  private final Trier<X> trier;
+  private final Function<T, R> f;
+  private final List<T> elements;
+  private final Object[] results;
+  private final boolean[] succeeded;
+  private final Throwable[] failures;
+  private final boolean[] aborted;
+  private final int[] pending;
+  private int pendingCount;
+  private Throwable abortCause;
+
+  BatchAttempt(Trier<X> trier, Collection<T> elements, Function<T, R> f) {
+    this.trier = trier;
+    this.f = f;
+    this.elements = new ArrayList<>(elements);
+    int size = this.elements.size();
+    this.results = new Object[size];
+    this.succeeded = new boolean[size];
+    this.failures = new Throwable[size];
+    this.aborted = new boolean[size];
+    this.pending = new int[size];
+    for (int i = 0; i < size; i++) {
+      pending[i] = i;
+    }
+    this.pendingCount = size;
+  }
+
+  List<R> run(Executor executor) throws LimitExceededException, InterruptedException {
+    Trier.Schedule schedule = trier.newSchedule();
+    long started = System.nanoTime();
+    Throwable lastException = null;
+    if (pendingCount > 0 && schedule.isExhausted()) {
+      throw failed(schedule.limitExceeded(null, f, null));
+    }
+    int attempt = 0;
+    while (pendingCount > 0) {
+      attempt++;
+      if (! trier.attemptAllowed()) {
+        throw failed(schedule.limitExceeded(Trier.CIRCUIT_OPEN, f, lastException));
+      }
+      long mark = trier.wakeUpMark();
+      schedule.attemptStarted();
+      try {
+        round(attempt, executor);
+      } finally {
+        schedule.attemptFinished();
+      }
+
+      int remaining = 0;
+      for (int k = 0; k < pendingCount; k++) {
+        int i = pending[k];
+        if (failures[i] != null) {
+          if (! aborted[i]) {
+            lastException = failures[i];
+          } else if (abortCause == null) {
+            abortCause = failures[i];
+          }
+          failures[i] = null;
+        }
+        if (! succeeded[i] && ! aborted[i]) {
+          pending[remaining++] = i;
+        }
+      }
+      pendingCount = remaining;
+      if (pendingCount == 0) {
+        break;
+      }
+
+      long delay = schedule.nextDelayNanos(lastException);
+      if (delay < 0) {
+        if (abortCause != null) {
+          throw aborted(attempt, started);
+        }
+        throw failed(schedule.limitExceeded(null, f, lastException));
+      }
+      if (! trier.retryAllowed()) {
+        throw failed(schedule.limitExceeded(Trier.BUDGET_EXHAUSTED, f, lastException));
+      }
+      trier.sleeping(f, attempt, delay);
+      trier.sleep(delay, mark);
+    }
+
+    if (abortCause != null) {
+      throw aborted(attempt, started);
+    }
+    @SuppressWarnings("unchecked")
+    List<R> list = (List<R>) Arrays.asList(results);
+    return list;
+  }
+
+  private void round(int attempt, Executor executor) throws InterruptedException {
+    if (pendingCount == 1) {
+      attemptElement(pending[0], attempt);
+      return;
+    }
+    CompletableFuture<?>[] tasks = new CompletableFuture<?>[pendingCount];
+    for (int k = 0; k < pendingCount; k++) {
+      int i = pending[k];
+      tasks[k] = CompletableFuture.runAsync(() -> attemptElement(i, attempt), executor);
+    }
+    try {
+      CompletableFuture.allOf(tasks).get();
+    } catch (ExecutionException e) {
+      // attemptElement catches failures of the attempts, so this is a failure of the executor or a listener
+      Throwable cause = e.getCause();
+      throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+    }
+  }
+
+  private void attemptElement(int i, int attempt) {
+    long started = trier.attemptStarted(f, attempt);
+    R res;
+    boolean accepted;
+    try {
+      res = trier.attempt(f, elements.get(i));
+      accepted = ! trier.isResultIgnored(res);
+    } catch (Throwable t) {
+      boolean ignored = trier.isExceptionIgnored(t);
+      trier.attemptFailed(f, attempt, started, t, ignored);
+      failures[i] = t;
+      aborted[i] = ! ignored;
+      return;
+    }
+    if (accepted) {
+      results[i] = res;
+      succeeded[i] = true;
+      trier.succeeded(f, attempt, started);
+    } else {
+      trier.resultRejected(f, attempt, started, res);
+    }
+  }
+
+  private LimitExceededException failed(LimitExceededException e) {
+    return trier.gaveUp(trier.batchLimitExceeded(e, Arrays.asList(results), failedElements()));
+  }
+
+  /**
+   * Reports the first exception that was not ignored, rather than a limit that may be not reached.
+   */
+  private LimitExceededException aborted(int attempts, long started) {
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    return trier.gaveUp(trier.batchAborted(attempts, elapsed, f, abortCause, Arrays.asList(results), failedElements()));
+  }
+
+  private List<Object> failedElements() {
+    List<Object> failed = new ArrayList<>();
+    for (int i = 0; i < results.length; i++) {
+      if (aborted[i]) {
+        failed.add(elements.get(i));
+      }
+    }
+    for (int k = 0; k < pendingCount; k++) {
+      failed.add(elements.get(pending[k]));
+    }
+    return failed;
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.List;
+
+/**
+ * Thrown by {@link Trier#tryToAll(java.util.Collection, java.util.function.Function)} when some
+ * elements never succeed. Keeps the results of the elements that did succeed.
+ */
+public class BatchLimitExceededException extends LimitExceededException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final List<?> results;
+  private final List<?> failedElements;
+  private final int size;
+
+  BatchLimitExceededException(LimitExceededException e, List<?> results, List<?> failedElements,
+                              boolean writableStackTrace) {
+    super(e.getFormat(), e.getAttempts(), e.getElapsed(), e.getLimit(), e.getAction(), e.getCause(),
+      writableStackTrace);
+    this.results = results;
+    this.failedElements = failedElements;
+    this.size = results.size();
+  }
+
+  @Override
+  public String getMessage() {
+    return super.getMessage() + ", " + failedElements.size() + " of " + size + " elements failed";
+  }
+
+  /**
+   * @return Results in the order of the elements, null for the elements that failed.
+   */
+  public List<?> getResults() {
+    return results;
+  }
+
+  /**
+   * @return Elements that never succeeded.
+   */
+  public List<?> getFailedElements() {
+    return failedElements;
+  }
+}
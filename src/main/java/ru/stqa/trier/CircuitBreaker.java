@@ -0,0 +1,251 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker that can be shared by triers calling the same dependency.
+ *
+ * <p>While the breaker is {@link State#CLOSED closed} outcomes of the attempts are kept in a sliding
+ * window. When the window is full and the share of failures in it reaches the threshold, the
+ * breaker {@link State#OPEN opens} and triers give up without making attempts. After the open
+ * duration the breaker becomes {@link State#HALF_OPEN half-open} and lets probe attempts through,
+ * no more than one per probe interval. A failed probe opens the breaker again, enough successful
+ * probes close it.
+ *
+ * <p>The breaker is lock-free, the window is a ring of atomic slots, the state changes together
+ * with its timestamps in one atomic reference.
+ */
+public class CircuitBreaker {
+
+  public enum State { CLOSED, OPEN, HALF_OPEN }
+
+  private static final int EMPTY = 0;
+  private static final int SUCCESS = 1;
+  private static final int FAILURE = 2;
+
+  private final Clock clock;
+  private final int failureThreshold;
+  private final long openDuration;
+  private final long probeInterval;
+  private final int probesToClose;
+
+  private final int windowSize;
+  private final AtomicReference<Phase> phase = new AtomicReference<>(Phase.CLOSED);
+  private volatile Window window;
+  private final AtomicInteger successfulProbes = new AtomicInteger();
+
+  private final LongAdder rejected = new LongAdder();
+
+  /**
+   * Creates a breaker that lets one probe through per open duration and closes after a successful one.
+   *
+   * @param windowSize How many last attempts to consider.
+   * @param failureRate Share of failed attempts in the window that opens the breaker, from 0 to 1.
+   * @param openDuration How long the breaker stays open, in milliseconds.
+   */
+  public CircuitBreaker(int windowSize, double failureRate, long openDuration) {
+    this(windowSize, failureRate, openDuration, openDuration, 1);
+  }
+
+  /**
+   * @param windowSize How many last attempts to consider.
+   * @param failureRate Share of failed attempts in the window that opens the breaker, from 0 to 1.
+   * @param openDuration How long the breaker stays open, in milliseconds.
+   * @param probeInterval Minimal time between probe attempts in the half-open state, in milliseconds.
+   * @param probesToClose How many successful probes close the breaker.
+   */
+  public CircuitBreaker(int windowSize, double failureRate, long openDuration, long probeInterval,
+                        int probesToClose) {
+    this(windowSize, failureRate, openDuration, probeInterval, probesToClose, Clock.monotonic());
+  }
+
+  public CircuitBreaker(int windowSize, double failureRate, long openDuration, long probeInterval,
+                        int probesToClose, Clock clock) {
+    if (windowSize <= 0) {
+      throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+    }
+    if (! (failureRate > 0 && failureRate <= 1)) {
+      throw new IllegalArgumentException("Failure rate must be greater than 0 and not greater than 1: " + failureRate);
+    }
+    if (openDuration < 0) {
+      throw new IllegalArgumentException("Open duration can't be negative: " + openDuration);
+    }
+    if (probeInterval < 0) {
+      throw new IllegalArgumentException("Probe interval can't be negative: " + probeInterval);
+    }
+    if (probesToClose <= 0) {
+      throw new IllegalArgumentException("Number of probes must be positive: " + probesToClose);
+    }
+    this.windowSize = windowSize;
+    this.window = new Window(windowSize);
+    this.failureThreshold = (int) Math.ceil(failureRate * windowSize);
+    this.openDuration = openDuration;
+    this.probeInterval = probeInterval;
+    this.probesToClose = probesToClose;
+    this.clock = Objects.requireNonNull(clock);
+  }
+
+  /**
+   * @return The current state of the breaker.
+   */
+  public State getState() {
+    return phase.get().state;
+  }
+
+  /**
+   * @return How many attempts were not allowed.
+   */
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  /**
+   * Must be called before an attempt.
+   *
+   * @return Whether the attempt is allowed.
+   */
+  public boolean tryAcquirePermission() {
+    Phase current = phase.get();
+    if (current.state == State.CLOSED) {
+      return true;
+    }
+    long now = clock.now();
+    while (current.state != State.CLOSED) {
+      boolean due = current.state == State.OPEN
+                    ? now - current.openedAt >= openDuration
+                    : now >= current.nextProbeAt;
+      if (! due) {
+        rejected.increment();
+        return false;
+      }
+      // the thread that moves the breaker to half-open or reserves the next probe time makes the probe
+      if (phase.compareAndSet(current, new Phase(State.HALF_OPEN, current.openedAt, now + probeInterval))) {
+        if (current.state == State.OPEN) {
+          successfulProbes.set(0);
+        }
+        return true;
+      }
+      current = phase.get();
+    }
+    return true;
+  }
+
+  /**
+   * Must be called when an attempt succeeds.
+   */
+  public void onSuccess() {
+    Phase current = phase.get();
+    if (current.state == State.CLOSED) {
+      window.record(SUCCESS);
+    } else if (current.state == State.HALF_OPEN && successfulProbes.incrementAndGet() >= probesToClose) {
+      moveFrom(State.HALF_OPEN, Phase.CLOSED);
+    }
+  }
+
+  /**
+   * Must be called when an attempt fails.
+   */
+  public void onFailure() {
+    Phase current = phase.get();
+    if (current.state == State.CLOSED) {
+      Window outcomes = window;
+      if (outcomes.record(FAILURE) >= failureThreshold && outcomes.isFull()) {
+        moveFrom(State.CLOSED, null);
+      }
+    } else if (current.state == State.HALF_OPEN) {
+      moveFrom(State.HALF_OPEN, null);
+    }
+  }
+
+  /**
+   * @param to The new phase, or null to open the breaker now.
+   */
+  private void moveFrom(State from, Phase to) {
+    Phase current = phase.get();
+    while (current.state == from) {
+      // the opening time is published by the successful CAS only, a losing thread can't overwrite it
+      if (phase.compareAndSet(current, to != null ? to : new Phase(State.OPEN, clock.now(), 0))) {
+        if (to == Phase.CLOSED) {
+          reset();
+        }
+        return;
+      }
+      // a probe was reserved meanwhile, the state is still the same
+      current = phase.get();
+    }
+  }
+
+  private void reset() {
+    // outcomes recorded concurrently to the old window are lost, that's fine
+    window = new Window(windowSize);
+  }
+
+  /**
+   * Immutable state of the breaker with the time it was opened and the time of the next probe.
+   */
+  private static class Phase {
+    static final Phase CLOSED = new Phase(State.CLOSED, 0, 0);
+
+    final State state;
+    final long openedAt;
+    final long nextProbeAt;
+
+    Phase(State state, long openedAt, long nextProbeAt) {
+      this.state = state;
+      this.openedAt = openedAt;
+      this.nextProbeAt = nextProbeAt;
+    }
+  }
+
+  /**
+   * Ring of the last outcomes with running counters.
+   */
+  private static class Window {
+    private final AtomicIntegerArray slots;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    Window(int size) {
+      this.slots = new AtomicIntegerArray(size);
+    }
+
+    /**
+     * @return The number of failures in the window.
+     */
+    int record(int outcome) {
+      int index = (int) (cursor.getAndIncrement() % slots.length());
+      int previous = slots.getAndSet(index, outcome);
+      if (previous == EMPTY) {
+        recorded.incrementAndGet();
+      }
+      int delta = (outcome == FAILURE ? 1 : 0) - (previous == FAILURE ? 1 : 0);
+      return delta == 0 ? failures.get() : failures.addAndGet(delta);
+    }
+
+    boolean isFull() {
+      return recorded.get() >= slots.length();
+    }
+  }
+}
@@ -44,4 +44,10 @@ public interface Clock {
    */
   default boolean past(long endInMillis) { return now() >= endInMillis; }
 
+  /**
+   * @return A clock that measures time with {@link System#nanoTime()}. It is not affected by system
+   *         time adjustments, but its {@link #now()} is not related to the epoch time.
+   */
+  static Clock monotonic() { return MonotonicClock.INSTANCE; }
+
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries until a {@link StopCondition} is reached, e.g. at most 5 attempts but no longer than 2
+ * seconds: {@code new ConditionBasedTrier<>(maxAttempts(5).or(maxElapsed(2000)), Backoff.fixed(100))}.
+ * {@link CounterBasedTrier} and {@link TimeBasedTrier} are presets of this trier.
+ * <p>
+ * When the condition has a deadline, the trier keeps an estimate of how long its attempts take,
+ * and gives up at once when the next attempt is not expected to finish before the deadline instead
+ * of sleeping and making an attempt whose result would come too late. Each trier keeps its own
+ * estimate, the triers created by the configuration methods start afresh.
+ */
+public class ConditionBasedTrier<X> extends Trier<X> {
+
+  private static final long NOT_STARTED = Long.MIN_VALUE;
+
+  private final StopCondition stop;
+  private final Clock clock;
+  private final Sleeper sleeper;
+  private final Backoff backoff;
+  private final boolean hasDeadline;
+  private final AttemptLatency latency;
+
+  public ConditionBasedTrier(StopCondition stop, Backoff backoff) {
+    this(stop, Clock.monotonic(), new Sleeper() {}, backoff);
+  }
+
+  public ConditionBasedTrier(StopCondition stop, Clock clock, Sleeper sleeper, Backoff backoff) {
+    this.stop = checkNotNull(stop);
+    this.clock = checkNotNull(clock);
+    this.sleeper = checkNotNull(sleeper);
+    this.backoff = checkNotNull(backoff);
+    this.hasDeadline = stop.timeLeft(0) != Long.MAX_VALUE;
+    this.latency = new AttemptLatency();
+  }
+
+  /**
+   * Creates a copy of the source trier with other settings.
+   */
+  protected ConditionBasedTrier(ConditionBasedTrier<X> source, Settings<X> settings) {
+    super(settings);
+    this.stop = source.stop;
+    this.clock = source.clock;
+    this.sleeper = source.sleeper;
+    this.backoff = source.backoff;
+    this.hasDeadline = source.hasDeadline;
+    this.latency = new AttemptLatency();
+  }
+
+  @Override
+  protected Trier<X> withSettings(Settings<X> settings) {
+    return new ConditionBasedTrier<>(this, settings);
+  }
+
+  @Override
+  protected Sleeper sleeper() {
+    return sleeper;
+  }
+
+  @Override
+  protected Schedule newSchedule() {
+    return new Schedule() {
+      // by the clock, read on the first attempt if there is a deadline, otherwise on the first failure
+      private long start = NOT_STARTED;
+      private int attempts = 0;
+      // in nanoseconds
+      private long delay = 0;
+      private long totalSleep = 0;
+      // by the clock, measured only if there is a deadline
+      private long attemptStarted;
+      private StopCondition reached;
+      private long expectedDuration = -1;
+
+      @Override
+      public long nextDelay(Throwable lastException) {
+        long next = nextDelayNanos(lastException);
+        return next <= 0 ? next : (next - 1) / 1_000_000 + 1;
+      }
+
+      @Override
+      public long nextDelayNanos(Throwable lastException) {
+        attempts++;
+        long now = clock.now();
+        if (start == NOT_STARTED) {
+          start = now;
+        }
+        long elapsed = now - start;
+        long slept = TimeUnit.NANOSECONDS.toMillis(totalSleep);
+        reached = stop.reachedBy(attempts, elapsed, slept);
+        if (reached != null) {
+          return -1;
+        }
+        delay = backoff.delayNanos(attempts, elapsed, delay, lastException);
+        long maxDelay = TimeUnit.MILLISECONDS.toNanos(Math.max(stop.maxDelay(attempts, elapsed, slept), 0));
+        long next = Math.min(delay, maxDelay);
+        if (hasDeadline) {
+          long left = stop.timeLeft(elapsed);
+          long expected = latency.estimate();
+          if (expected > 0 && expected > left - TimeUnit.NANOSECONDS.toMillis(next)) {
+            expectedDuration = expected;
+            return -1;
+          }
+        }
+        totalSleep += next;
+        return next;
+      }
+
+      @Override
+      public boolean isExhausted() {
+        reached = stop.reachedBeforeFirstAttempt();
+        return reached != null;
+      }
+
+      @Override
+      public void attemptStarted() {
+        if (hasDeadline) {
+          attemptStarted = clock.now();
+          if (start == NOT_STARTED) {
+            start = attemptStarted;
+          }
+        }
+      }
+
+      @Override
+      public void attemptFinished() {
+        if (hasDeadline) {
+          latency.record(clock.now() - attemptStarted);
+        }
+      }
+
+      @Override
+      public long timeLeftNanos() {
+        if (! hasDeadline) {
+          // no deadline, do not bother the clock
+          return Long.MAX_VALUE;
+        }
+        long left = stop.timeLeft(start == NOT_STARTED ? 0 : clock.now() - start);
+        return left == Long.MAX_VALUE ? left : TimeUnit.MILLISECONDS.toNanos(Math.max(left, 0));
+      }
+
+      @Override
+      public LimitExceededException limitExceeded(String format, Object action, Throwable lastException) {
+        StopCondition condition = reached != null ? reached : stop;
+        if (format == null && expectedDuration > 0) {
+          format = "Gave up after %1$d attempts to perform action %4$s, the next attempt would not finish"
+            + " before the deadline, attempts take about " + expectedDuration + " milliseconds";
+        }
+        return ConditionBasedTrier.this.limitExceeded(
+          format != null ? format : condition.message(),
+          attempts, start == NOT_STARTED ? 0 : clock.now() - start, condition.limit(), action, lastException);
+      }
+    };
+  }
+}
@@ -16,11 +16,9 @@
  */
 package ru.stqa.trier;
 
-import java.util.function.Consumer;
-import java.util.function.Function;
-import java.util.function.Supplier;
+import java.time.Duration;
 
-public class CounterBasedTrier<X> extends Trier<X> {
+public class CounterBasedTrier<X> extends ConditionBasedTrier<X> {
 
   public static <X> CounterBasedTrier<X> times(int n) {
     return new CounterBasedTrier<>(n);
@@ -28,11 +26,6 @@ public class CounterBasedTrier<X> extends Trier<X> {
 
   private final static long DEFAULT_SLEEP_TIMEOUT = 500;
 
-  private final Sleeper sleeper;
-
-  private final int n;
-  private final long interval;
-
   public CounterBasedTrier(int n) {
     this(n, new Sleeper() {}, DEFAULT_SLEEP_TIMEOUT);
   }
@@ -41,102 +34,32 @@ public class CounterBasedTrier<X> extends Trier<X> {
     this(n, new Sleeper() {}, interval);
   }
 
+  public CounterBasedTrier(int n, Duration interval) {
+    this(n, new Sleeper() {}, Backoff.fixed(interval));
+  }
+
   public CounterBasedTrier(int n, Sleeper sleeper, long interval) {
-    this.n = n;
-    this.sleeper = checkNotNull(sleeper);
-    this.interval = checkNotNull(interval);
+    this(n, sleeper, Backoff.fixed(interval));
   }
 
-  @Override
-  public void tryTo(Runnable r) throws LimitExceededException, InterruptedException {
-    Throwable lastException = null;
-    for (int i = 0; i < n; i++) {
-      try {
-        r.run();
-        return;
-      } catch (Throwable t) {
-        if (! isExceptionIgnored(t)) {
-          throw t;
-        }
-        lastException = t;
-      }
-      if (i < n-1) {
-        sleeper.sleep(interval);
-      }
-    }
-    String message = String.format(
-      "Limit exceeded after %d attempts to perform action %s", n, r);
-    throw new LimitExceededException(message, lastException);
+  public CounterBasedTrier(int n, Backoff backoff) {
+    this(n, new Sleeper() {}, backoff);
   }
 
-  @Override
-  public <T extends X> T tryTo(Supplier<T> s) throws LimitExceededException, InterruptedException {
-    Throwable lastException = null;
-    for (int i = 0; i < n; i++) {
-      try {
-        T res = s.get();
-        if (! isResultIgnored(res)) {
-          return res;
-        }
-      } catch (Throwable t) {
-        if (! isExceptionIgnored(t)) {
-          throw t;
-        }
-        lastException = t;
-      }
-      if (i < n-1) {
-        sleeper.sleep(interval);
-      }
-    }
-    String message = String.format(
-      "Limit exceeded after %d attempts to perform action %s", n, s);
-    throw new LimitExceededException(message, lastException);
+  public CounterBasedTrier(int n, Sleeper sleeper, Backoff backoff) {
+    this(n, Clock.monotonic(), sleeper, backoff);
   }
 
-  @Override
-  public <T> void tryTo(Consumer<T> c, T par) throws LimitExceededException, InterruptedException {
-    Throwable lastException = null;
-    for (int i = 0; i < n; i++) {
-      try {
-        c.accept(par);
-        return;
-      } catch (Throwable t) {
-        if (! isExceptionIgnored(t)) {
-          throw t;
-        }
-        lastException = t;
-      }
-      if (i < n-1) {
-        sleeper.sleep(interval);
-      }
-    }
-    String message = String.format(
-      "Limit exceeded after %d attempts to perform action %s", n, c);
-    throw new LimitExceededException(message, lastException);
+  public CounterBasedTrier(int n, Clock clock, Sleeper sleeper, Backoff backoff) {
+    super(StopCondition.maxAttempts(n), clock, sleeper, backoff);
   }
 
-  @Override
-  public <T, R extends X> R tryTo(Function<T, R> f, T par) throws LimitExceededException, InterruptedException {
-    Throwable lastException = null;
-    for (int i = 0; i < n; i++) {
-      try {
-        R res = f.apply(par);
-        if (! isResultIgnored(res)) {
-          return res;
-        }
-      } catch (Throwable t) {
-        if (! isExceptionIgnored(t)) {
-          throw t;
-        }
-        lastException = t;
-      }
-      if (i < n-1) {
-        sleeper.sleep(interval);
-      }
-    }
-    String message = String.format(
-      "Limit exceeded after %d attempts to perform action %s", n, f);
-    throw new LimitExceededException(message, lastException);
+  private CounterBasedTrier(CounterBasedTrier<X> source, Settings<X> settings) {
+    super(source, settings);
   }
 
+  @Override
+  protected Trier<X> withSettings(Settings<X> settings) {
+    return new CounterBasedTrier<>(this, settings);
+  }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+/**
+ * Decides whether an exception should be retried or should abort the trier. The verdict depends on
+ * the exception class only, so it is computed once per class and then looked up in constant time.
+ * {@link ClassValue} keeps the verdicts with the classes themselves, they do not prevent the
+ * classes from being unloaded.
+ *
+ * <p>The class of the exception and its superclasses are checked from the most specific one, the
+ * first class found in either list decides. A class that is in both lists aborts. If no class is
+ * found, the exception is retried only when there is no list of exceptions to retry on.
+ *
+ * <p>The classifier has no mutable state of its own, it is built once when a trier is configured
+ * and shared by the trier, its copies and all threads that use them.
+ */
+final class ExceptionClassifier extends ClassValue<Boolean> {
+
+  private final Class<? extends Throwable>[] retryOn;
+  private final Class<? extends Throwable>[] abortOn;
+
+  /**
+   * @param retryOn Exceptions to retry on, or null to retry on all exceptions. Not copied.
+   * @param abortOn Exceptions to abort on, or null. Not copied.
+   */
+  ExceptionClassifier(Class<? extends Throwable>[] retryOn, Class<? extends Throwable>[] abortOn) {
+    this.retryOn = retryOn;
+    this.abortOn = abortOn;
+  }
+
+  boolean isRetryable(Throwable t) {
+    return get(t.getClass());
+  }
+
+  @Override
+  protected Boolean computeValue(Class<?> type) {
+    for (Class<?> cls = type; cls != null; cls = cls.getSuperclass()) {
+      if (contains(abortOn, cls)) {
+        return false;
+      }
+      if (contains(retryOn, cls)) {
+        return true;
+      }
+    }
+    return retryOn == null;
+  }
+
+  private static boolean contains(Class<? extends Throwable>[] classes, Class<?> cls) {
+    if (classes != null) {
+      for (Class<? extends Throwable> c : classes) {
+        if (c == cls) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Hedged attempts for idempotent operations that return a result. If an attempt does not finish
+ * within the hedge delay, one more copy of it is started, the first result that is not ignored
+ * wins and the other copies are cancelled with interruption. The hedge delay can be fixed or
+ * learned from the observed durations of the recent attempts.
+ *
+ * <p>Copies run on the given executor, the calling thread just waits for the first acceptable
+ * result. An attempt fails only when all its copies fail, the outcome of the copy that finished
+ * last is reported to the trier.
+ *
+ * <p>One instance can be shared by several triers, the limit of hedges running at the same time
+ * applies to all of them.
+ */
+public class Hedging {
+
+  private static final int MIN_SAMPLES = 100;
+  private static final int RECALCULATE_EVERY = 64;
+  private static final int WINDOW = 1024;
+
+  private final Executor executor;
+  private final int maxHedgesPerAttempt;
+  private final int maxHedgesInFlight;
+  private final double percentile;
+
+  private final AtomicInteger hedgesInFlight = new AtomicInteger();
+  // the durations of the current window only, older ones are forgotten
+  private volatile Histogram durations = new Histogram();
+  private final AtomicLong samples = new AtomicLong();
+  private volatile long delayNanos;
+
+  /**
+   * @param delay How long to wait for an attempt before starting a hedge, in milliseconds.
+   * @param maxHedgesPerAttempt How many hedges can be started for one attempt.
+   * @param maxHedgesInFlight How many hedges can run at the same time.
+   * @param executor The executor to run attempts on.
+   */
+  public Hedging(long delay, int maxHedgesPerAttempt, int maxHedgesInFlight, Executor executor) {
+    this(delay, Double.NaN, maxHedgesPerAttempt, maxHedgesInFlight, executor);
+  }
+
+  private Hedging(long delay, double percentile, int maxHedgesPerAttempt, int maxHedgesInFlight,
+                  Executor executor) {
+    if (delay < 0) {
+      throw new IllegalArgumentException("Delay can't be negative: " + delay);
+    }
+    if (maxHedgesPerAttempt < 0) {
+      throw new IllegalArgumentException("Number of hedges per attempt can't be negative: " + maxHedgesPerAttempt);
+    }
+    if (maxHedgesInFlight < 0) {
+      throw new IllegalArgumentException("Number of hedges in flight can't be negative: " + maxHedgesInFlight);
+    }
+    this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delay);
+    this.percentile = percentile;
+    this.maxHedgesPerAttempt = maxHedgesPerAttempt;
+    this.maxHedgesInFlight = maxHedgesInFlight;
+    this.executor = executor;
+  }
+
+  /**
+   * Creates hedging that starts a hedge when an attempt takes longer than the given percentile of
+   * the durations observed so far. Until enough attempts are observed, the initial delay is used.
+   *
+   * @param percentile The percentile of attempt durations, from 0 to 100.
+   * @param initialDelay The delay to use until the durations are learned, in milliseconds.
+   * @param maxHedgesPerAttempt How many hedges can be started for one attempt.
+   * @param maxHedgesInFlight How many hedges can run at the same time.
+   * @param executor The executor to run attempts on.
+   * @return The hedging.
+   */
+  public static Hedging atPercentile(double percentile, long initialDelay, int maxHedgesPerAttempt,
+                                     int maxHedgesInFlight, Executor executor) {
+    if (! (percentile >= 0 && percentile <= 100)) {
+      throw new IllegalArgumentException("Percentile must be from 0 to 100: " + percentile);
+    }
+    return new Hedging(initialDelay, percentile, maxHedgesPerAttempt, maxHedgesInFlight, executor);
+  }
+
+  /**
+   * @return The current hedge delay, in nanoseconds.
+   */
+  public long getDelayNanos() {
+    return delayNanos;
+  }
+
+  /**
+   * Makes one hedged attempt.
+   *
+   * @return The first result that is not ignored, or the ignored result of the copy that finished
+   *         last if all copies returned ignored results.
+   */
+  <T> T call(Supplier<T> s, Predicate<? super T> resultIgnored) {
+    BlockingQueue<Copy<T>> completed = new LinkedBlockingQueue<>();
+    List<Copy<T>> copies = new ArrayList<>(1 + maxHedgesPerAttempt);
+    copies.add(start(s, completed, false));
+    int running = 1;
+    int hedges = 0;
+    boolean canHedge = maxHedgesPerAttempt > 0;
+    try {
+      T rejected = null;
+      Throwable failure = null;
+      while (running > 0) {
+        Copy<T> done;
+        if (canHedge) {
+          done = ManagedBlocking.poll(completed, delayNanos);
+          if (done == null) {
+            Copy<T> hedge = tryToHedge(s, completed);
+            if (hedge != null) {
+              copies.add(hedge);
+              running++;
+            }
+            canHedge = hedge != null && ++hedges < maxHedgesPerAttempt;
+            continue;
+          }
+        } else {
+          done = ManagedBlocking.take(completed);
+        }
+        running--;
+        try {
+          T res = done.get();
+          if (! resultIgnored.test(res)) {
+            return res;
+          }
+          rejected = res;
+          failure = null;
+        } catch (ExecutionException e) {
+          failure = e.getCause();
+        }
+      }
+      if (failure != null) {
+        throw Hedging.<RuntimeException>sneakyThrow(failure);
+      }
+      return rejected;
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Hedging.<RuntimeException>sneakyThrow(e);
+
+    } finally {
+      for (Copy<T> copy : copies) {
+        copy.cancel(true);
+      }
+    }
+  }
+
+  private <T> Copy<T> start(Supplier<T> s, BlockingQueue<Copy<T>> completed, boolean hedge) {
+    Copy<T> copy = new Copy<>(s, completed, hedge);
+    executor.execute(copy);
+    return copy;
+  }
+
+  private <T> Copy<T> tryToHedge(Supplier<T> s, BlockingQueue<Copy<T>> completed) {
+    if (hedgesInFlight.incrementAndGet() > maxHedgesInFlight) {
+      hedgesInFlight.decrementAndGet();
+      return null;
+    }
+    try {
+      return start(s, completed, true);
+    } catch (RejectedExecutionException e) {
+      hedgesInFlight.decrementAndGet();
+      return null;
+    }
+  }
+
+  void learn(long duration) {
+    if (Double.isNaN(percentile)) {
+      return;
+    }
+    Histogram window = durations;
+    window.record(duration);
+    long n = samples.incrementAndGet();
+    if (n % RECALCULATE_EVERY == 0 && window.getCount() >= MIN_SAMPLES) {
+      delayNanos = window.getPercentile(percentile);
+    }
+    if (n % WINDOW == 0) {
+      // start a fresh window, so that the delay follows a shift in latency, a few samples recorded
+      // to the old one concurrently are lost
+      durations = new Histogram();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E extends Throwable> E sneakyThrow(Throwable t) throws E {
+    throw (E) t;
+  }
+
+  private final class Copy<T> extends FutureTask<T> {
+    private final BlockingQueue<Copy<T>> completed;
+    private final boolean hedge;
+    private volatile long started;
+    private volatile boolean failed;
+
+    Copy(Supplier<T> s, BlockingQueue<Copy<T>> completed, boolean hedge) {
+      super(s::get);
+      this.completed = completed;
+      this.hedge = hedge;
+    }
+
+    @Override
+    public void run() {
+      started = System.nanoTime();
+      super.run();
+    }
+
+    @Override
+    protected void setException(Throwable t) {
+      failed = true;
+      super.setException(t);
+    }
+
+    @Override
+    protected void done() {
+      // a cancelled copy lost the race, the time it ran is a lower bound of its duration and is
+      // recorded too, otherwise only the fast copies are sampled and the delay drifts low
+      if (started != 0 && (isCancelled() || ! failed)) {
+        learn(System.nanoTime() - started);
+      }
+      if (hedge) {
+        hedgesInFlight.decrementAndGet();
+      }
+      completed.offer(this);
+    }
+  }
+}
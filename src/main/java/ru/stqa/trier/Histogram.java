@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values with a fixed set of log-linear buckets: every power of
+ * two is split into eight equal buckets, so a value is known within 12.5% precision. Memory does
+ * not depend on the number of recorded values.
+ */
+public class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+
+  /**
+   * @param value The value to record, negative values are recorded as zero.
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts.incrementAndGet(bucketOf(value));
+    count.increment();
+    sum.add(value);
+  }
+
+  /**
+   * @return How many values were recorded.
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * @return Sum of the recorded values.
+   */
+  public long getSum() {
+    return sum.sum();
+  }
+
+  /**
+   * @return Mean of the recorded values, or 0 if there are none.
+   */
+  public double getMean() {
+    long n = count.sum();
+    return n == 0 ? 0 : (double) sum.sum() / n;
+  }
+
+  /**
+   * @param percentile The percentile, from 0 to 100.
+   * @return The upper bound of the bucket that contains the percentile, or 0 if there are no values.
+   */
+  public long getPercentile(double percentile) {
+    long total = 0;
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return upperBoundOf(i);
+      }
+    }
+    return upperBoundOf(BUCKETS - 1);
+  }
+
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long upperBoundOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = bucket % SUB_BUCKETS;
+    long lower = (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+    long width = 1L << (exponent - SUB_BUCKET_BITS);
+    return lower + width - 1 < 0 ? Long.MAX_VALUE : lower + width - 1;
+  }
+}
@@ -16,8 +16,89 @@
  */
 package ru.stqa.trier;
 
+/**
+ * Thrown when a trier gives up. The message is built lazily from the structured fields, so an
+ * exception that is caught and handled never pays for formatting it.
+ */
 public class LimitExceededException extends Exception {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String format;
+  private final int attempts;
+  private final long elapsed;
+  private final long limit;
+  private final Object action;
+
+  private String message;
+
   public LimitExceededException(String msg, Throwable e) {
     super(msg, e);
+    this.message = msg;
+    this.format = null;
+    this.attempts = 0;
+    this.elapsed = 0;
+    this.limit = 0;
+    this.action = null;
+  }
+
+  /**
+   * @param format The message format, it gets the number of attempts, the elapsed time, the limit
+   *        and the action as arguments {@code %1$d}, {@code %2$d}, {@code %3$d} and {@code %4$s}.
+   * @param attempts How many attempts were made.
+   * @param elapsed How long the attempts took, in milliseconds.
+   * @param limit The limit that was exceeded, its meaning depends on the trier.
+   * @param action The action that was tried.
+   * @param cause The last ignored exception, if any.
+   * @param writableStackTrace Whether the stack trace should be filled in.
+   */
+  public LimitExceededException(String format, int attempts, long elapsed, long limit, Object action,
+                                Throwable cause, boolean writableStackTrace) {
+    super(null, cause, true, writableStackTrace);
+    this.format = format;
+    this.attempts = attempts;
+    this.elapsed = elapsed;
+    this.limit = limit;
+    this.action = action;
+  }
+
+  @Override
+  public String getMessage() {
+    if (message == null && format != null) {
+      message = String.format(format, attempts, elapsed, limit, action);
+    }
+    return message;
+  }
+
+  String getFormat() {
+    return format;
+  }
+
+  /**
+   * @return How many attempts were made.
+   */
+  public int getAttempts() {
+    return attempts;
+  }
+
+  /**
+   * @return How long the attempts took, in milliseconds.
+   */
+  public long getElapsed() {
+    return elapsed;
+  }
+
+  /**
+   * @return The limit that was exceeded, its meaning depends on the trier.
+   */
+  public long getLimit() {
+    return limit;
+  }
+
+  /**
+   * @return The action that was tried.
+   */
+  public Object getAction() {
+    return action;
   }
 }
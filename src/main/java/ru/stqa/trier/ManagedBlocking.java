@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Blocking operations that tell the {@link ForkJoinPool} they block when they run on its worker
+ * thread, so the pool can start a spare thread instead of losing parallelism. On other threads they
+ * just block.
+ */
+final class ManagedBlocking {
+
+  private ManagedBlocking() {}
+
+  static boolean isForkJoinWorker() {
+    return Thread.currentThread() instanceof ForkJoinWorkerThread;
+  }
+
+  /**
+   * Same as {@link Thread#sleep(long)}.
+   */
+  static void sleep(long duration) throws InterruptedException {
+    if (! isForkJoinWorker()) {
+      Thread.sleep(duration);
+      return;
+    }
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(duration);
+    ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+      @Override
+      public boolean block() throws InterruptedException {
+        long left = deadline - System.nanoTime();
+        if (left > 0) {
+          TimeUnit.NANOSECONDS.sleep(left);
+        }
+        return true;
+      }
+
+      @Override
+      public boolean isReleasable() {
+        return deadline - System.nanoTime() <= 0;
+      }
+    });
+  }
+
+  /**
+   * Same as {@link BlockingQueue#poll(long, TimeUnit)} with the time in nanoseconds.
+   */
+  static <E> E poll(BlockingQueue<E> queue, long timeout) throws InterruptedException {
+    if (! isForkJoinWorker()) {
+      return queue.poll(timeout, TimeUnit.NANOSECONDS);
+    }
+    QueueBlocker<E> blocker = new QueueBlocker<>(queue, timeout);
+    ForkJoinPool.managedBlock(blocker);
+    return blocker.item;
+  }
+
+  /**
+   * Same as {@link BlockingQueue#take()}.
+   */
+  static <E> E take(BlockingQueue<E> queue) throws InterruptedException {
+    if (! isForkJoinWorker()) {
+      return queue.take();
+    }
+    QueueBlocker<E> blocker = new QueueBlocker<>(queue, -1);
+    ForkJoinPool.managedBlock(blocker);
+    return blocker.item;
+  }
+
+  /**
+   * Same as {@link Future#get(long, TimeUnit)} with the time in nanoseconds, {@link Long#MAX_VALUE}
+   * waits as long as it takes.
+   */
+  static <T> T get(Future<T> future, long timeout)
+    throws InterruptedException, ExecutionException, TimeoutException {
+    if (! isForkJoinWorker()) {
+      return future.get(timeout, TimeUnit.NANOSECONDS);
+    }
+    long deadline = System.nanoTime() + timeout;
+    ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+      @Override
+      public boolean block() throws InterruptedException {
+        try {
+          future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException | TimeoutException | CancellationException e) {
+          // reported by the get below
+        }
+        return true;
+      }
+
+      @Override
+      public boolean isReleasable() {
+        return future.isDone() || deadline - System.nanoTime() <= 0;
+      }
+    });
+    return future.get(0, TimeUnit.NANOSECONDS);
+  }
+
+  private static final class QueueBlocker<E> implements ForkJoinPool.ManagedBlocker {
+    private final BlockingQueue<E> queue;
+    private final long timeout;
+    private E item;
+
+    QueueBlocker(BlockingQueue<E> queue, long timeout) {
+      this.queue = queue;
+      this.timeout = timeout;
+    }
+
+    @Override
+    public boolean block() throws InterruptedException {
+      if (item == null) {
+        item = timeout < 0 ? queue.take() : queue.poll(timeout, TimeUnit.NANOSECONDS);
+      }
+      return true;
+    }
+
+    @Override
+    public boolean isReleasable() {
+      return item != null || (item = queue.poll()) != null;
+    }
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+/**
+ * Clock based on {@link System#nanoTime()}. It does not jump when the system time is adjusted, so
+ * it is safe to measure durations with it, but its values are not related to the epoch time.
+ */
+final class MonotonicClock implements Clock {
+
+  static final MonotonicClock INSTANCE = new MonotonicClock();
+
+  private static final long ORIGIN = System.nanoTime();
+
+  private MonotonicClock() {}
+
+  /**
+   * @return Milliseconds passed since an arbitrary fixed point in time.
+   */
+  @Override
+  public long now() {
+    return (System.nanoTime() - ORIGIN) / 1_000_000;
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Drives many concurrent waits with a few threads. Each wait registers a probe, the probes are kept
+ * in a single queue ordered by the time they are due, and the worker threads always run the one
+ * with the earliest deadline. A waiting caller holds no thread of the service between probes, so
+ * thousands of waits cost as many threads as the service has, not one thread each.
+ *
+ * <p>Probes should be quick, a slow probe delays the others that are due at the same time.
+ */
+public class PollingService implements AutoCloseable {
+
+  private static final class Probe implements Comparable<Probe> {
+    final long due;
+    final long sequence;
+    final AsyncAttempt<?> attempt;
+
+    Probe(long due, long sequence, AsyncAttempt<?> attempt) {
+      this.due = due;
+      this.sequence = sequence;
+      this.attempt = attempt;
+    }
+
+    @Override
+    public int compareTo(Probe other) {
+      int c = Long.compare(due - other.due, 0);
+      return c != 0 ? c : Long.compare(sequence, other.sequence);
+    }
+  }
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition available = lock.newCondition();
+  private final PriorityQueue<Probe> queue = new PriorityQueue<>();
+  private final Thread[] workers;
+  private long sequence;
+  private boolean closed;
+
+  /**
+   * Creates a service with one thread per available processor.
+   */
+  public PollingService() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param threads The number of threads that run the probes.
+   */
+  public PollingService(int threads) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+    }
+    workers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      workers[i] = new Thread(this::work, "trier-polling-" + (i + 1));
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+  }
+
+  /**
+   * Polls the supplier until it returns a result that the trier does not ignore. The first probe
+   * runs at once, the delays between probes and the limit are the ones of the trier.
+   *
+   * @param trier The trier that decides when to probe and when to give up.
+   * @param s The probe.
+   * @return A future that completes with the first accepted result, or fails with
+   *         {@link LimitExceededException} or with an exception that is not ignored.
+   */
+  public <X, T extends X> CompletableFuture<T> poll(Trier<X> trier, Supplier<T> s) {
+    return trier.poll(s, this::schedule);
+  }
+
+  /**
+   * Same as {@link #poll(Trier, Supplier)}, but blocks the caller until the wait is over. The
+   * probes still run on the threads of the service.
+   *
+   * @param trier The trier that decides when to probe and when to give up.
+   * @param s The probe.
+   * @return The first accepted result.
+   */
+  public <X, T extends X> T await(Trier<X> trier, Supplier<T> s)
+    throws LimitExceededException, InterruptedException {
+    CompletableFuture<T> future = poll(trier, s);
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      future.cancel(false);
+      throw e;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof LimitExceededException) {
+        throw (LimitExceededException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /**
+   * @return How many probes are waiting for their time.
+   */
+  public int getPendingCount() {
+    lock.lock();
+    try {
+      return queue.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stops the threads. Waits that are still pending fail with {@link CancellationException}.
+   */
+  @Override
+  public void close() {
+    List<Probe> pending;
+    lock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      pending = new ArrayList<>(queue);
+      queue.clear();
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    for (Probe probe : pending) {
+      probe.attempt.abort(new CancellationException("Polling service is closed"));
+    }
+  }
+
+  private void schedule(AsyncAttempt<?> attempt, long delayNanos) {
+    long due = System.nanoTime() + delayNanos;
+    lock.lock();
+    try {
+      if (closed) {
+        throw new RejectedExecutionException("Polling service is closed");
+      }
+      Probe probe = new Probe(due, sequence++, attempt);
+      queue.add(probe);
+      if (queue.peek() == probe) {
+        available.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void work() {
+    for (;;) {
+      Probe probe;
+      lock.lock();
+      try {
+        for (;;) {
+          if (closed) {
+            return;
+          }
+          Probe head = queue.peek();
+          if (head == null) {
+            available.awaitUninterruptibly();
+            continue;
+          }
+          long wait = head.due - System.nanoTime();
+          if (wait <= 0) {
+            probe = queue.poll();
+            break;
+          }
+          available.awaitNanos(wait);
+        }
+        if (! queue.isEmpty()) {
+          // let another worker watch the next probe while this one is busy
+          available.signal();
+        }
+      } catch (InterruptedException e) {
+        return;
+      } finally {
+        lock.unlock();
+      }
+      try {
+        probe.attempt.run();
+      } catch (Throwable t) {
+        probe.attempt.abort(t);
+      }
+    }
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers outcomes of {@link Trier#tryTo(java.util.function.Function, Object)} by the parameter.
+ * Accepted results are kept for a while, so callers that ask for the same parameter get the result
+ * at once. Failures with {@link LimitExceededException} are kept for a shorter while, so callers
+ * fail fast instead of going through the whole retry loop again. Exceptions that are not ignored
+ * are not cached.
+ *
+ * <p>A cache should be used with one function only, the function is not a part of the key. The cache
+ * is thread safe, concurrent callers with the same parameter that miss it all call the function.
+ *
+ * <p>When the cache is full the entries stored first are evicted first. Eviction takes constant
+ * time on average, the size can be exceeded for a moment while another thread is evicting.
+ */
+public class ResultCache {
+
+  static final Object MISSING = new Object();
+  private static final Object NULL_KEY = new Object();
+
+  private static final class Entry {
+    final Object key;
+    final Object value;
+    final LimitExceededException failure;
+    final long expires;
+
+    Entry(Object key, Object value, LimitExceededException failure, long expires) {
+      this.key = key;
+      this.value = value;
+      this.failure = failure;
+      this.expires = expires;
+    }
+  }
+
+  private final long ttl;
+  private final long negativeTtl;
+  private final int maxSize;
+  private final Clock clock;
+  private final Map<Object, Entry> entries = new ConcurrentHashMap<>();
+  // entries in the order they were stored, including replaced and removed ones until they are polled
+  private final Queue<Entry> order = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final AtomicBoolean evicting = new AtomicBoolean();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder negativeHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * @param ttl How long to keep accepted results, in milliseconds.
+   * @param negativeTtl How long to keep failures, in milliseconds, 0 not to keep them.
+   * @param maxSize The maximum number of entries.
+   */
+  public ResultCache(long ttl, long negativeTtl, int maxSize) {
+    this(ttl, negativeTtl, maxSize, Clock.monotonic());
+  }
+
+  public ResultCache(long ttl, long negativeTtl, int maxSize, Clock clock) {
+    if (ttl < 0 || negativeTtl < 0) {
+      throw new IllegalArgumentException("Time to live can't be negative");
+    }
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Size must be positive: " + maxSize);
+    }
+    if (clock == null) {
+      throw new NullPointerException();
+    }
+    this.ttl = ttl;
+    this.negativeTtl = negativeTtl;
+    this.maxSize = maxSize;
+    this.clock = clock;
+  }
+
+  /**
+   * @return The cached result, or {@link #MISSING} if there is none.
+   * @throws LimitExceededException The cached failure, the same instance is thrown to all callers.
+   */
+  Object get(Object key) throws LimitExceededException {
+    Object k = key != null ? key : NULL_KEY;
+    Entry entry = entries.get(k);
+    if (entry != null && clock.past(entry.expires)) {
+      entries.remove(k, entry);
+      entry = null;
+    }
+    if (entry == null) {
+      misses.increment();
+      return MISSING;
+    }
+    if (entry.failure != null) {
+      negativeHits.increment();
+      throw entry.failure;
+    }
+    hits.increment();
+    return entry.value;
+  }
+
+  void put(Object key, Object value) {
+    store(new Entry(key != null ? key : NULL_KEY, value, null, clock.laterBy(ttl)));
+  }
+
+  void putFailure(Object key, LimitExceededException failure) {
+    if (negativeTtl > 0) {
+      store(new Entry(key != null ? key : NULL_KEY, null, failure, clock.laterBy(negativeTtl)));
+    }
+  }
+
+  private void store(Entry entry) {
+    entries.put(entry.key, entry);
+    order.offer(entry);
+    queued.incrementAndGet();
+    if (entries.size() > maxSize || queued.get() > 2 * maxSize) {
+      evict();
+    }
+  }
+
+  private void evict() {
+    // a single evictor at a time, so that concurrent ones do not shrink the cache below its size
+    if (! evicting.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      while (entries.size() > maxSize || queued.get() > 2 * maxSize) {
+        Entry oldest = order.poll();
+        if (oldest == null) {
+          break;
+        }
+        queued.decrementAndGet();
+        if (entries.get(oldest.key) != oldest) {
+          // replaced, invalidated or expired already
+          continue;
+        }
+        if (entries.size() > maxSize) {
+          if (entries.remove(oldest.key, oldest)) {
+            evictions.increment();
+          }
+        } else {
+          // only the queue is too long because of the stale entries, keep this one
+          order.offer(oldest);
+          queued.incrementAndGet();
+        }
+      }
+    } finally {
+      evicting.set(false);
+    }
+  }
+
+  /**
+   * Forgets the outcome for the parameter.
+   */
+  public void invalidate(Object key) {
+    entries.remove(key != null ? key : NULL_KEY);
+  }
+
+  /**
+   * Forgets all outcomes.
+   */
+  public void clear() {
+    entries.clear();
+    order.clear();
+    queued.set(0);
+  }
+
+  /**
+   * @return The number of entries, including the expired ones that are not removed yet.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return How many times a cached result was returned.
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * @return How many times a cached failure was thrown.
+   */
+  public long getNegativeHitCount() {
+    return negativeHits.sum();
+  }
+
+  /**
+   * @return How many times there was nothing in the cache.
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * @return How many entries were removed to keep the cache within its size.
+   */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+}
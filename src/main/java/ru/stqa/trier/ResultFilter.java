@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Decides whether a result is "empty" and should be ignored by default. The check depends on the
+ * class of the result, so it is chosen once per class and then looked up in constant time, a result
+ * goes through a single check instead of a chain of {@code instanceof} tests.
+ *
+ * <p>Ignored are false, zero numbers, empty char sequences, collections, maps, arrays and optionals.
+ * Rules added with {@link #with(Class, Predicate)} take precedence, the rule added last wins if
+ * several of them apply. Results of other classes are never ignored.
+ */
+final class ResultFilter extends ClassValue<Predicate<Object>> {
+
+  static final ResultFilter DEFAULT = new ResultFilter(new Class<?>[0], new Predicate<?>[0]);
+
+  private static final Predicate<Object> NEVER = res -> false;
+
+  private final Class<?>[] types;
+  private final Predicate<?>[] rules;
+
+  private ResultFilter(Class<?>[] types, Predicate<?>[] rules) {
+    this.types = types;
+    this.rules = rules;
+  }
+
+  /**
+   * @param type The class of results the rule applies to, including subclasses.
+   * @param rule Returns true for results that should be ignored.
+   * @return A new filter that has all the rules of this one and the new rule.
+   */
+  <T> ResultFilter with(Class<T> type, Predicate<? super T> rule) {
+    int n = types.length;
+    Class<?>[] newTypes = new Class<?>[n + 1];
+    Predicate<?>[] newRules = new Predicate<?>[n + 1];
+    System.arraycopy(types, 0, newTypes, 0, n);
+    System.arraycopy(rules, 0, newRules, 0, n);
+    newTypes[n] = type;
+    newRules[n] = rule;
+    return new ResultFilter(newTypes, newRules);
+  }
+
+  boolean isIgnored(Object result) {
+    return result == null || get(result.getClass()).test(result);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  protected Predicate<Object> computeValue(Class<?> type) {
+    for (int i = types.length - 1; i >= 0; i--) {
+      if (types[i].isAssignableFrom(type)) {
+        Class<?> ruleType = types[i];
+        Predicate<Object> rule = (Predicate<Object>) rules[i];
+        return res -> rule.test(ruleType.cast(res));
+      }
+    }
+    if (type == Boolean.class) {
+      return res -> ! (Boolean) res;
+    }
+    if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class) {
+      return res -> ((Number) res).longValue() == 0;
+    }
+    if (Number.class.isAssignableFrom(type)) {
+      return res -> ((Number) res).doubleValue() == 0.0;
+    }
+    if (CharSequence.class.isAssignableFrom(type)) {
+      return res -> ((CharSequence) res).length() == 0;
+    }
+    if (Collection.class.isAssignableFrom(type)) {
+      return res -> ((Collection<?>) res).isEmpty();
+    }
+    if (Map.class.isAssignableFrom(type)) {
+      return res -> ((Map<?, ?>) res).isEmpty();
+    }
+    if (type == Optional.class) {
+      return res -> ! ((Optional<?>) res).isPresent();
+    }
+    if (type.isArray()) {
+      return type.getComponentType().isPrimitive()
+        ? res -> Array.getLength(res) == 0
+        : res -> ((Object[]) res).length == 0;
+    }
+    return NEVER;
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A token bucket that limits retries across all triers sharing it. Every retry takes a token, every
+ * successful call puts a fraction of a token back. When a dependency fails, the bucket runs dry and
+ * triers give up after the first attempt instead of multiplying the load on it.
+ *
+ * <p>The bucket is lock-free, it can be shared by any number of threads.
+ */
+public class RetryBudget {
+
+  private static final long SCALE = 1000;
+
+  private final long capacity;
+  private final long deposit;
+  private final AtomicLong balance;
+
+  private final LongAdder withdrawn = new LongAdder();
+  private final LongAdder exhausted = new LongAdder();
+  private final LongAdder deposited = new LongAdder();
+
+  /**
+   * @param maxRetries Capacity of the bucket, in retries. The bucket starts full.
+   * @param retryRatio How many retries a successful call earns, e.g. 0.1 allows one retry per ten
+   *        successful calls when the bucket is empty.
+   */
+  public RetryBudget(int maxRetries, double retryRatio) {
+    if (maxRetries < 0) {
+      throw new IllegalArgumentException("Capacity can't be negative: " + maxRetries);
+    }
+    if (retryRatio < 0 || Double.isNaN(retryRatio)) {
+      throw new IllegalArgumentException("Retry ratio can't be negative: " + retryRatio);
+    }
+    this.capacity = maxRetries * SCALE;
+    this.deposit = Math.round(Math.min(retryRatio, maxRetries) * SCALE);
+    this.balance = new AtomicLong(capacity);
+  }
+
+  /**
+   * Takes a token for a retry.
+   *
+   * @return Whether a retry is allowed.
+   */
+  public boolean tryWithdraw() {
+    while (true) {
+      long current = balance.get();
+      if (current < SCALE) {
+        exhausted.increment();
+        return false;
+      }
+      if (balance.compareAndSet(current, current - SCALE)) {
+        withdrawn.increment();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Puts tokens earned by a successful call back to the bucket.
+   */
+  public void deposit() {
+    deposited.increment();
+    while (true) {
+      long current = balance.get();
+      if (current >= capacity) {
+        return;
+      }
+      if (balance.compareAndSet(current, Math.min(capacity, current + deposit))) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return How many retries are available right now.
+   */
+  public long getAvailableRetries() {
+    return balance.get() / SCALE;
+  }
+
+  /**
+   * @return How many retries were allowed.
+   */
+  public long getWithdrawnCount() {
+    return withdrawn.sum();
+  }
+
+  /**
+   * @return How many retries were refused because the bucket was empty.
+   */
+  public long getExhaustedCount() {
+    return exhausted.sum();
+  }
+
+  /**
+   * @return How many successful calls were reported.
+   */
+  public long getDepositedCount() {
+    return deposited.sum();
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Registry of retry loops in flight, keyed by the parameter. The first caller with a key runs the
+ * loop, callers with an equal key that come while it runs wait for its outcome instead of starting
+ * loops of their own. The registry is a {@link ConcurrentHashMap}, callers with different keys do
+ * not contend.
+ */
+final class SingleFlight {
+
+  private static final Object NULL_KEY = new Object();
+
+  @FunctionalInterface
+  interface Loader<R> {
+    R load() throws LimitExceededException, InterruptedException;
+  }
+
+  /**
+   * A caller that may have to wait for the loop in flight.
+   */
+  interface Follower {
+
+    /**
+     * @return How long the caller can wait, in nanoseconds, {@link Long#MAX_VALUE} if there is no
+     *         deadline.
+     */
+    long timeLeftNanos();
+
+    /**
+     * @return The exception to throw when the caller can't wait any longer.
+     */
+    LimitExceededException timedOut();
+  }
+
+  private final ConcurrentHashMap<Object, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+
+  /**
+   * Runs the loader or joins the one that is already running for an equal key. If the running
+   * loader is interrupted, the callers waiting for it do not get the interruption, one of them runs
+   * the loader again. A caller waits for the running loader no longer than its own deadline.
+   */
+  <R> R join(Object key, Loader<R> loader, Follower follower) throws LimitExceededException, InterruptedException {
+    Object k = key != null ? key : NULL_KEY;
+    while (true) {
+      CompletableFuture<Object> flight = new CompletableFuture<>();
+      CompletableFuture<Object> leader = flights.putIfAbsent(k, flight);
+      if (leader == null) {
+        try {
+          R res = loader.load();
+          flight.complete(res);
+          return res;
+        } catch (Throwable t) {
+          flight.completeExceptionally(t);
+          throw t;
+        } finally {
+          flights.remove(k, flight);
+        }
+      }
+      try {
+        @SuppressWarnings("unchecked")
+        R res = (R) ManagedBlocking.get(leader, follower.timeLeftNanos());
+        return res;
+      } catch (TimeoutException e) {
+        throw follower.timedOut();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof InterruptedException) {
+          continue;
+        }
+        if (cause instanceof LimitExceededException) {
+          throw (LimitExceededException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IllegalStateException(cause);
+      }
+    }
+  }
+
+  /**
+   * @return The number of loops in flight.
+   */
+  int size() {
+    return flights.size();
+  }
+}
@@ -17,7 +17,10 @@
 package ru.stqa.trier;
 
 /**
- * Abstraction around {@link Thread#sleep(long)} to permit better testability.
+ * Abstraction around {@link Thread#sleep(long)} to permit better testability. On a worker thread of
+ * a {@link java.util.concurrent.ForkJoinPool} the default implementation sleeps through
+ * {@link java.util.concurrent.ForkJoinPool#managedBlock managedBlock}, so retries in parallel
+ * streams and async tasks on the common pool do not starve it.
  */
 public interface Sleeper {
 
@@ -27,5 +30,16 @@ public interface Sleeper {
    * @param duration How long to sleep.
    * @throws InterruptedException If the thread is interrupted while sleeping.
    */
-  default void sleep(long duration) throws InterruptedException { Thread.sleep(duration); };
+  default void sleep(long duration) throws InterruptedException { ManagedBlocking.sleep(duration); };
+
+  /**
+   * Sleeps for the specified duration of time, in nanoseconds. By default the duration is rounded
+   * up to whole milliseconds, see {@link SpinningSleeper} for finer resolution.
+   *
+   * @param duration How long to sleep, in nanoseconds.
+   * @throws InterruptedException If the thread is interrupted while sleeping.
+   */
+  default void sleepNanos(long duration) throws InterruptedException {
+    sleep(duration <= 0 ? 0 : (duration - 1) / 1_000_000 + 1);
+  }
 }
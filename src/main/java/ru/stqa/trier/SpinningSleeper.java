@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A sleeper with sub-millisecond resolution for waiting on in-process state. Far from the deadline
+ * it parks the thread, closer to it it yields, and during the last microseconds it spins, so it
+ * wakes up right on time at the cost of burning a core for a while. Intervals shorter than the spin
+ * threshold never leave the CPU.
+ *
+ * <p>Spinning uses {@code Thread.onSpinWait()} when the runtime has it.
+ */
+public class SpinningSleeper implements Sleeper {
+
+  private static final MethodHandle ON_SPIN_WAIT = findOnSpinWait();
+
+  private final long spinNanos;
+  private final long yieldNanos;
+
+  /**
+   * Spins for the last 10 microseconds and yields for 100 microseconds before that.
+   */
+  public SpinningSleeper() {
+    this(10_000, 100_000);
+  }
+
+  /**
+   * @param spinNanos How long before the deadline to start spinning, in nanoseconds.
+   * @param yieldNanos How long to yield before spinning, in nanoseconds.
+   */
+  public SpinningSleeper(long spinNanos, long yieldNanos) {
+    if (spinNanos < 0 || yieldNanos < 0) {
+      throw new IllegalArgumentException("Thresholds can't be negative");
+    }
+    this.spinNanos = spinNanos;
+    this.yieldNanos = yieldNanos;
+  }
+
+  @Override
+  public void sleep(long duration) throws InterruptedException {
+    sleepNanos(TimeUnit.MILLISECONDS.toNanos(duration));
+  }
+
+  @Override
+  public void sleepNanos(long duration) throws InterruptedException {
+    long deadline = System.nanoTime() + duration;
+    while (true) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      long left = deadline - System.nanoTime();
+      if (left <= 0) {
+        return;
+      }
+      if (left > spinNanos + yieldNanos) {
+        LockSupport.parkNanos(this, left - spinNanos - yieldNanos);
+      } else if (left > spinNanos) {
+        Thread.yield();
+      } else {
+        onSpinWait();
+      }
+    }
+  }
+
+  private static void onSpinWait() {
+    if (ON_SPIN_WAIT != null) {
+      try {
+        ON_SPIN_WAIT.invokeExact();
+      } catch (Throwable ignored) {
+        // never thrown by onSpinWait
+      }
+    }
+  }
+
+  private static MethodHandle findOnSpinWait() {
+    try {
+      return MethodHandles.lookup().findStatic(Thread.class, "onSpinWait", MethodType.methodType(void.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      // Java 8, plain busy spinning
+      return null;
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.time.Duration;
+
+/**
+ * Decides when a {@link ConditionBasedTrier} should give up. Conditions are stateless, everything
+ * they need is passed as arguments, so one instance can be shared by any number of triers and calls.
+ * Conditions are combined with {@link #or(StopCondition)}.
+ */
+@FunctionalInterface
+public interface StopCondition {
+
+  /**
+   * Checked after each failed attempt.
+   *
+   * @param attempts The number of attempts made so far, starting from 1.
+   * @param elapsed Time passed since the first attempt, in milliseconds.
+   * @param totalSleep Time slept between the attempts so far, in milliseconds.
+   * @return Whether there should be no more attempts.
+   */
+  boolean isReached(int attempts, long elapsed, long totalSleep);
+
+  /**
+   * Lets a condition shorten the sleep before the next attempt, e.g. not to sleep past a deadline.
+   *
+   * @return The longest delay before the next attempt, in milliseconds.
+   */
+  default long maxDelay(int attempts, long elapsed, long totalSleep) {
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Lets a condition bound a single attempt of a trier {@link Trier#timingOut(Duration, java.util.concurrent.Executor)
+   * timing out attempts}, e.g. not to let an attempt run past a deadline.
+   *
+   * @param elapsed Time passed since the first attempt, in milliseconds.
+   * @return The longest time the next attempt may take, in milliseconds.
+   */
+  default long timeLeft(long elapsed) {
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * @return The condition that is reached, this one or a part of a combined condition, or null.
+   */
+  default StopCondition reachedBy(int attempts, long elapsed, long totalSleep) {
+    return isReached(attempts, elapsed, totalSleep) ? this : null;
+  }
+
+  /**
+   * Checked once before the first attempt, e.g. a limit of zero attempts lets no attempt through.
+   *
+   * @return The condition that is reached before any attempt, or null.
+   */
+  default StopCondition reachedBeforeFirstAttempt() {
+    return null;
+  }
+
+  /**
+   * @return The format of the {@link LimitExceededException#getMessage() message} to give up with.
+   */
+  default String message() {
+    return "Stop condition reached after %1$d attempts to perform action %4$s";
+  }
+
+  /**
+   * @return The {@link LimitExceededException#getLimit() limit} to report when giving up.
+   */
+  default long limit() {
+    return 0;
+  }
+
+  /**
+   * @param other Another condition.
+   * @return A condition that is reached when either of the two is reached.
+   */
+  default StopCondition or(StopCondition other) {
+    return new StopConditions.Either(this, other);
+  }
+
+  /**
+   * @param n The maximum number of attempts, no attempts are made if it is not positive.
+   * @return A condition that is reached after the given number of attempts.
+   */
+  static StopCondition maxAttempts(int n) {
+    return new StopConditions.MaxAttempts(n);
+  }
+
+  /**
+   * @param duration The maximum time since the first attempt, in milliseconds.
+   * @return A condition that is reached when the time is over. The last attempt is made right at
+   *         the deadline, the trier never sleeps past it.
+   */
+  static StopCondition maxElapsed(long duration) {
+    return new StopConditions.MaxElapsed(duration);
+  }
+
+  /**
+   * @see #maxElapsed(long)
+   */
+  static StopCondition maxElapsed(Duration duration) {
+    return maxElapsed(duration.toMillis());
+  }
+
+  /**
+   * @param sleep The maximum time to sleep between the attempts in total, in milliseconds. Unlike
+   *        {@link #maxElapsed(long)} it does not count the time spent in the attempts.
+   * @return A condition that is reached when the sleep time is used up.
+   */
+  static StopCondition maxTotalSleep(long sleep) {
+    return new StopConditions.MaxTotalSleep(sleep);
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+/**
+ * The {@link StopCondition} implementations.
+ */
+final class StopConditions {
+
+  private StopConditions() {}
+
+  static final class MaxAttempts implements StopCondition {
+    private final int n;
+
+    MaxAttempts(int n) {
+      this.n = n;
+    }
+
+    @Override
+    public boolean isReached(int attempts, long elapsed, long totalSleep) {
+      return attempts >= n;
+    }
+
+    @Override
+    public StopCondition reachedBeforeFirstAttempt() {
+      return n < 1 ? this : null;
+    }
+
+    @Override
+    public String message() {
+      return "Limit exceeded after %1$d attempts to perform action %4$s";
+    }
+
+    @Override
+    public long limit() {
+      return n;
+    }
+  }
+
+  static final class MaxElapsed implements StopCondition {
+    private final long duration;
+
+    MaxElapsed(long duration) {
+      this.duration = duration;
+    }
+
+    @Override
+    public boolean isReached(int attempts, long elapsed, long totalSleep) {
+      return elapsed >= duration;
+    }
+
+    @Override
+    public long maxDelay(int attempts, long elapsed, long totalSleep) {
+      // never sleep past the deadline, make the last attempt right at it
+      return duration - elapsed;
+    }
+
+    @Override
+    public long timeLeft(long elapsed) {
+      return duration - elapsed;
+    }
+
+    @Override
+    public String message() {
+      return "Timed out after %3$d milliseconds trying to perform action %4$s";
+    }
+
+    @Override
+    public long limit() {
+      return duration;
+    }
+  }
+
+  static final class MaxTotalSleep implements StopCondition {
+    private final long sleep;
+
+    MaxTotalSleep(long sleep) {
+      Backoffs.checkNotNegative(sleep);
+      this.sleep = sleep;
+    }
+
+    @Override
+    public boolean isReached(int attempts, long elapsed, long totalSleep) {
+      return totalSleep >= sleep;
+    }
+
+    @Override
+    public long maxDelay(int attempts, long elapsed, long totalSleep) {
+      return sleep - totalSleep;
+    }
+
+    @Override
+    public String message() {
+      return "Slept %3$d milliseconds in total trying to perform action %4$s";
+    }
+
+    @Override
+    public long limit() {
+      return sleep;
+    }
+  }
+
+  static final class Either implements StopCondition {
+    private final StopCondition first;
+    private final StopCondition second;
+
+    Either(StopCondition first, StopCondition second) {
+      if (first == null || second == null) {
+        throw new NullPointerException();
+      }
+      this.first = first;
+      this.second = second;
+    }
+
+    @Override
+    public boolean isReached(int attempts, long elapsed, long totalSleep) {
+      return reachedBy(attempts, elapsed, totalSleep) != null;
+    }
+
+    @Override
+    public StopCondition reachedBy(int attempts, long elapsed, long totalSleep) {
+      StopCondition reached = first.reachedBy(attempts, elapsed, totalSleep);
+      return reached != null ? reached : second.reachedBy(attempts, elapsed, totalSleep);
+    }
+
+    @Override
+    public StopCondition reachedBeforeFirstAttempt() {
+      StopCondition reached = first.reachedBeforeFirstAttempt();
+      return reached != null ? reached : second.reachedBeforeFirstAttempt();
+    }
+
+    @Override
+    public long maxDelay(int attempts, long elapsed, long totalSleep) {
+      return Math.min(first.maxDelay(attempts, elapsed, totalSleep), second.maxDelay(attempts, elapsed, totalSleep));
+    }
+
+    @Override
+    public long timeLeft(long elapsed) {
+      return Math.min(first.timeLeft(elapsed), second.timeLeft(elapsed));
+    }
+
+    @Override
+    public String message() {
+      return first.message();
+    }
+
+    @Override
+    public long limit() {
+      return first.limit();
+    }
+  }
+}
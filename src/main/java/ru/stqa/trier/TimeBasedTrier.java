@@ -16,141 +16,54 @@
  */
 package ru.stqa.trier;
 
-import java.util.function.Consumer;
-import java.util.function.Function;
-import java.util.function.Supplier;
+import java.time.Duration;
 
-public class TimeBasedTrier<X> extends Trier<X> {
+public class TimeBasedTrier<X> extends ConditionBasedTrier<X> {
 
   public static <T> TimeBasedTrier<T> during(long duration) {
     return new TimeBasedTrier<>(duration);
   }
 
-  private final static long DEFAULT_SLEEP_TIMEOUT = 500;
-
-  private final Clock clock;
-  private final Sleeper sleeper;
+  public static <T> TimeBasedTrier<T> during(Duration duration) {
+    return new TimeBasedTrier<>(duration);
+  }
 
-  private final long duration;
-  private final long interval;
+  private final static long DEFAULT_SLEEP_TIMEOUT = 500;
 
   public TimeBasedTrier(long duration) {
-    this(duration, new Clock() {}, new Sleeper() {}, DEFAULT_SLEEP_TIMEOUT);
+    this(duration, Clock.monotonic(), new Sleeper() {}, DEFAULT_SLEEP_TIMEOUT);
   }
 
   public TimeBasedTrier(long duration, long interval) {
-    this(duration, new Clock() {}, new Sleeper() {}, interval);
+    this(duration, Clock.monotonic(), new Sleeper() {}, interval);
   }
 
-  public TimeBasedTrier(long duration, Clock clock, Sleeper sleeper, long interval) {
-    this.duration = duration;
-    this.clock = checkNotNull(clock);
-    this.sleeper = checkNotNull(sleeper);
-    this.interval = checkNotNull(interval);
+  public TimeBasedTrier(Duration duration) {
+    this(duration.toMillis());
   }
 
-  @Override
-  public void tryTo(Runnable r) throws LimitExceededException, InterruptedException {
-    long end = clock.laterBy(duration);
-    Throwable lastException = null;
-    while (true) {
-      try {
-        r.run();
-        return;
-      } catch (Throwable t) {
-        if (! isExceptionIgnored(t)) {
-          throw t;
-        }
-        lastException = t;
-      }
-
-      if (clock.past(end)) {
-        String timeoutMessage = String.format(
-          "Timed out after %d milliseconds trying to perform action %s", duration, r);
-        throw new LimitExceededException(timeoutMessage, lastException);
-      }
-
-      sleeper.sleep(interval);
-    }
+  public TimeBasedTrier(Duration duration, Duration interval) {
+    this(duration.toMillis(), Clock.monotonic(), new Sleeper() {}, Backoff.fixed(interval));
   }
 
-  @Override
-  public <T extends X> T tryTo(Supplier<T> s) throws LimitExceededException, InterruptedException {
-    long end = clock.laterBy(duration);
-    Throwable lastException = null;
-    while (true) {
-      try {
-        T res = s.get();
-        if (! isResultIgnored(res)) {
-          return res;
-        }
-      } catch (Throwable t) {
-        if (! isExceptionIgnored(t)) {
-          throw t;
-        }
-        lastException = t;
-      }
-
-      if (clock.past(end)) {
-        String timeoutMessage = String.format(
-          "Timed out after %d milliseconds trying to perform action %s", duration, s);
-        throw new LimitExceededException(timeoutMessage, lastException);
-      }
-
-      sleeper.sleep(interval);
-    }
+  public TimeBasedTrier(long duration, Clock clock, Sleeper sleeper, long interval) {
+    this(duration, clock, sleeper, Backoff.fixed(interval));
   }
 
-  @Override
-  public <T> void tryTo(Consumer<T> c, T par) throws LimitExceededException, InterruptedException {
-    long end = clock.laterBy(duration);
-    Throwable lastException = null;
-    while (true) {
-      try {
-        c.accept(par);
-        return;
-      } catch (Throwable t) {
-        if (! isExceptionIgnored(t)) {
-          throw t;
-        }
-        lastException = t;
-      }
+  public TimeBasedTrier(long duration, Backoff backoff) {
+    this(duration, Clock.monotonic(), new Sleeper() {}, backoff);
+  }
 
-      if (clock.past(end)) {
-        String timeoutMessage = String.format(
-          "Timed out after %d milliseconds trying to perform action %s", duration, c);
-        throw new LimitExceededException(timeoutMessage, lastException);
-      }
+  public TimeBasedTrier(long duration, Clock clock, Sleeper sleeper, Backoff backoff) {
+    super(StopCondition.maxElapsed(duration), clock, sleeper, backoff);
+  }
 
-      sleeper.sleep(interval);
-    }
+  private TimeBasedTrier(TimeBasedTrier<X> source, Settings<X> settings) {
+    super(source, settings);
   }
 
   @Override
-  public <T, R extends X> R tryTo(Function<T, R> f, T par) throws LimitExceededException, InterruptedException {
-    long end = clock.laterBy(duration);
-    Throwable lastException = null;
-    while (true) {
-      try {
-        R res = f.apply(par);
-        if (! isResultIgnored(res)) {
-          return res;
-        }
-      } catch (Throwable t) {
-        if (! isExceptionIgnored(t)) {
-          throw t;
-        }
-        lastException = t;
-      }
-
-      if (clock.past(end)) {
-        String timeoutMessage = String.format(
-          "Timed out after %d milliseconds trying to perform action %s", duration, f);
-        throw new LimitExceededException(timeoutMessage, lastException);
-      }
-
-      sleeper.sleep(interval);
-    }
+  protected Trier<X> withSettings(Settings<X> settings) {
+    return new TimeBasedTrier<>(this, settings);
   }
-
 }
@@ -16,56 +16,1060 @@
  */
 package ru.stqa.trier;
 
+import java.time.Duration;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleSupplier;
 import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.IntSupplier;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+import java.util.function.LongSupplier;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * Retries actions until they succeed or the limit is exceeded. Triers are immutable: the
+ * configuration methods return a new trier, so a trier built once can be shared by any number of
+ * threads and calls.
+ */
 public abstract class Trier<X> {
 
-  private Class<? extends Throwable>[] ignoredExceptions;
-  private Predicate<X> ignoredResult;
+  private static final CompletableFuture<Void> DONE = completedFuture(null);
 
-  abstract public void tryTo(Runnable r) throws LimitExceededException, InterruptedException;
-  abstract public <T extends X> T tryTo(Supplier<T> s) throws LimitExceededException, InterruptedException;
-  abstract public <T> void tryTo(Consumer<T> c, T par) throws LimitExceededException, InterruptedException;
-  abstract public <T, R extends X> R tryTo(Function<T, R> f, T par) throws LimitExceededException, InterruptedException;
+  protected static final String BUDGET_EXHAUSTED =
+    "Retry budget exhausted after %1$d attempts to perform action %4$s";
+  protected static final String CIRCUIT_OPEN =
+    "Circuit breaker is open after %1$d attempts to perform action %4$s";
+  private static final String FLIGHT_TIMED_OUT =
+    "Timed out waiting for another call to perform action %4$s";
+  protected static final String RETRIES_DEFERRED =
+    "Retries are left to the outer trier after %1$d attempts to perform action %4$s";
 
-  @SafeVarargs
-  final public Trier<X> ignoring(Class<? extends Throwable>... ignoredExceptions) {
-    if (this.ignoredExceptions != null) {
-      throw new IllegalStateException("Ignored exceptions can be set once only");
+  private final Class<? extends Throwable>[] ignoredExceptions;
+  private final Class<? extends Throwable>[] abortingExceptions;
+  private final ExceptionClassifier exceptionClassifier;
+  private final Predicate<X> ignoredResult;
+  private final ResultFilter resultFilter;
+  private final ScheduledExecutorService scheduler;
+  private final boolean writableStackTrace;
+  private final RetryBudget retryBudget;
+  private final CircuitBreaker circuitBreaker;
+  private final TrierListener listener;
+  private final Hedging hedging;
+  private final ResultCache resultCache;
+  private final SingleFlight singleFlight;
+  private final WakeUpSignal wakeUpSignal;
+  private final long attemptTimeout;
+  private final Executor attemptExecutor;
+  private final boolean deferringRetries;
+
+  /**
+   * Creates a trier with the default settings: all exceptions and falsy results are ignored.
+   */
+  protected Trier() {
+    this(new Settings<>());
+  }
+
+  /**
+   * Creates a trier with the given settings. The settings are copied, later changes to them do not
+   * affect the trier.
+   */
+  protected Trier(Settings<X> settings) {
+    this.ignoredExceptions = settings.ignoredExceptions;
+    this.abortingExceptions = settings.abortingExceptions;
+    this.exceptionClassifier = settings.exceptionClassifier;
+    this.ignoredResult = settings.ignoredResult;
+    this.resultFilter = settings.resultFilter;
+    this.scheduler = settings.scheduler;
+    this.writableStackTrace = settings.writableStackTrace;
+    this.retryBudget = settings.retryBudget;
+    this.circuitBreaker = settings.circuitBreaker;
+    this.listener = settings.listener;
+    this.hedging = settings.hedging;
+    this.resultCache = settings.resultCache;
+    this.singleFlight = settings.singleFlight;
+    this.wakeUpSignal = settings.wakeUpSignal;
+    this.attemptTimeout = settings.attemptTimeout;
+    this.attemptExecutor = settings.attemptExecutor;
+    this.deferringRetries = settings.deferringRetries;
+  }
+
+  /**
+   * Settings common to all triers, they are gathered here to let the configuration methods create
+   * a modified copy of a trier of any kind.
+   */
+  protected static final class Settings<X> {
+    private Class<? extends Throwable>[] ignoredExceptions;
+    private Class<? extends Throwable>[] abortingExceptions;
+    private ExceptionClassifier exceptionClassifier;
+    private Predicate<X> ignoredResult;
+    private ResultFilter resultFilter = ResultFilter.DEFAULT;
+    private ScheduledExecutorService scheduler;
+    private boolean writableStackTrace = true;
+    private RetryBudget retryBudget;
+    private CircuitBreaker circuitBreaker;
+    private TrierListener listener;
+    private Hedging hedging;
+    private ResultCache resultCache;
+    private SingleFlight singleFlight;
+    private WakeUpSignal wakeUpSignal;
+    private long attemptTimeout;
+    private Executor attemptExecutor;
+    private boolean deferringRetries;
+
+    private Settings() {
+    }
+
+    private Settings(Trier<X> trier) {
+      this.ignoredExceptions = trier.ignoredExceptions;
+      this.abortingExceptions = trier.abortingExceptions;
+      this.exceptionClassifier = trier.exceptionClassifier;
+      this.ignoredResult = trier.ignoredResult;
+      this.resultFilter = trier.resultFilter;
+      this.scheduler = trier.scheduler;
+      this.writableStackTrace = trier.writableStackTrace;
+      this.retryBudget = trier.retryBudget;
+      this.circuitBreaker = trier.circuitBreaker;
+      this.listener = trier.listener;
+      this.hedging = trier.hedging;
+      this.resultCache = trier.resultCache;
+      this.singleFlight = trier.singleFlight;
+      this.wakeUpSignal = trier.wakeUpSignal;
+      this.attemptTimeout = trier.attemptTimeout;
+      this.attemptExecutor = trier.attemptExecutor;
+      this.deferringRetries = trier.deferringRetries;
     }
-    this.ignoredExceptions = ignoredExceptions;
-    return this;
   }
 
-  final public Trier<X> ignoring(Predicate<X> ignoredResult) {
-    if (this.ignoredResult != null) {
-      throw new IllegalStateException("Predicate to ignore unwanted results can be set once only");
+
+  /**
+   * Creates the retry state for a single call.
+   *
+   * @return A fresh schedule that decides how long to wait before the next attempt.
+   */
+  abstract protected Schedule newSchedule();
+
+  /**
+   * @return The sleeper to wait between attempts with.
+   */
+  abstract protected Sleeper sleeper();
+
+  /**
+   * Creates a trier of the same kind with the same limit, but with other settings. Used by the
+   * configuration methods, which never modify the trier they are called on.
+   *
+   * @param settings The settings of the new trier.
+   * @return A new trier.
+   */
+  abstract protected Trier<X> withSettings(Settings<X> settings);
+
+  /**
+   * Per-call retry state consulted after each failed attempt.
+   */
+  protected interface Schedule {
+
+    /**
+     * @param lastException The last ignored exception, or null if there was none.
+     * @return How long to wait before the next attempt, in milliseconds, or a negative value if
+     *         the limit is exceeded and there should be no more attempts.
+     */
+    long nextDelay(Throwable lastException);
+
+    /**
+     * Same as {@link #nextDelay(Throwable)}, but in nanoseconds. Triers call this method, by
+     * default it converts the delay computed in milliseconds.
+     */
+    default long nextDelayNanos(Throwable lastException) {
+      long delay = nextDelay(lastException);
+      return delay < 0 ? delay : TimeUnit.MILLISECONDS.toNanos(delay);
+    }
+
+    /**
+     * Checked once before the first attempt.
+     *
+     * @return Whether the limit is exceeded before any attempt, e.g. no attempts are allowed at all.
+     */
+    default boolean isExhausted() {
+      return false;
+    }
+
+    /**
+     * Called right before each attempt, e.g. to measure how long attempts take.
+     */
+    default void attemptStarted() {
+    }
+
+    /**
+     * Called right after each attempt, whatever its outcome.
+     */
+    default void attemptFinished() {
+    }
+
+    /**
+     * Bounds the next attempt of a trier {@link #timingOut(Duration, Executor) timing out attempts}.
+     *
+     * @return The longest time the next attempt may take, in nanoseconds, {@link Long#MAX_VALUE}
+     *         if there is no deadline.
+     */
+    default long timeLeftNanos() {
+      return Long.MAX_VALUE;
     }
-    this.ignoredResult = ignoredResult;
-    return this;
+
+    /**
+     * @param format The message format to use instead of the one of the trier, or null.
+     * @param action The action that was tried.
+     * @param lastException The last ignored exception, if any.
+     * @return The exception to report when the limit is exceeded.
+     */
+    LimitExceededException limitExceeded(String format, Object action, Throwable lastException);
   }
 
-  final public Trier<X> until(Predicate<X> expectedResult) {
-    if (this.ignoredResult != null) {
-      throw new IllegalStateException("Predicate to ignore unwanted results can be set once only");
+  public void tryTo(Runnable r) throws LimitExceededException, InterruptedException {
+    run(r, () -> { r.run(); return null; }, false);
+  }
+
+  public <T extends X> T tryTo(Supplier<T> s) throws LimitExceededException, InterruptedException {
+    return run(s, () -> attempt(s), true);
+  }
+
+  public <T> void tryTo(Consumer<T> c, T par) throws LimitExceededException, InterruptedException {
+    run(c, () -> { c.accept(par); return null; }, false);
+  }
+
+  public <T, R extends X> R tryTo(Function<T, R> f, T par) throws LimitExceededException, InterruptedException {
+    if (resultCache != null) {
+      Object cached = resultCache.get(par);
+      if (cached != ResultCache.MISSING) {
+        @SuppressWarnings("unchecked")
+        R res = (R) cached;
+        return res;
+      }
     }
-    this.ignoredResult = expectedResult.negate();
-    return this;
+    return singleFlight == null ? load(f, par) : singleFlight.join(par, () -> load(f, par), follower(f));
   }
 
-  final protected boolean isExceptionIgnored(Throwable t) {
-    if (ignoredExceptions != null) {
-      for (Class<? extends Throwable> cls : ignoredExceptions) {
-        if (cls.isAssignableFrom(t.getClass())) {
-          return true;
+  /**
+   * Bounds the wait of a caller that joins a loop in flight by the deadline of this trier and of
+   * the scope of the caller.
+   */
+  private SingleFlight.Follower follower(Object action) {
+    return new SingleFlight.Follower() {
+      private Schedule schedule;
+
+      @Override
+      public long timeLeftNanos() {
+        schedule = newSchedule();
+        TrierScope scope = TrierScope.current();
+        long left = schedule.timeLeftNanos();
+        return scope == null ? left : Math.min(left, scope.remainingNanos());
+      }
+
+      @Override
+      public LimitExceededException timedOut() {
+        return gaveUp(schedule.limitExceeded(FLIGHT_TIMED_OUT, action, null));
+      }
+    };
+  }
+
+  private <T, R extends X> R load(Function<T, R> f, T par) throws LimitExceededException, InterruptedException {
+    if (resultCache == null) {
+      return run(f, () -> attempt(f, par), true);
+    }
+    R res;
+    try {
+      res = run(f, () -> attempt(f, par), true);
+    } catch (LimitExceededException e) {
+      resultCache.putFailure(par, e);
+      throw e;
+    }
+    resultCache.put(par, res);
+    return res;
+  }
+
+  /**
+   * The retry loop shared by all overloads of {@link #tryTo(Supplier) tryTo}.
+   *
+   * @param action The action to report to the listener and in the exception.
+   * @param call Makes a single attempt.
+   * @param checkResult Whether the result should be checked, false for actions without a result.
+   */
+  private <T extends X> T run(Object action, Supplier<T> call, boolean checkResult)
+    throws LimitExceededException, InterruptedException {
+    ObjectAttempt<T> attempt = new ObjectAttempt<>(call, checkResult);
+    run(action, attempt);
+    return attempt.res;
+  }
+
+  /**
+   * The synchronous retry loop, it returns when an attempt is accepted and leaves the result in the
+   * attempt.
+   *
+   * @param action The action to report to the listener and in the exception.
+   * @param call Makes single attempts and keeps the last result.
+   */
+  private void run(Object action, Attempt call) throws LimitExceededException, InterruptedException {
+    Schedule schedule = newSchedule();
+    TrierScope scope = TrierScope.open(schedule.timeLeftNanos());
+    TrierScope previous = null;
+    boolean deferring = false;
+    if (scope != null) {
+      schedule = scope.bound(schedule);
+      deferring = deferringRetries && scope.isNested();
+      previous = scope.enter();
+    }
+    Throwable lastException = null;
+    try {
+      if (schedule.isExhausted()) {
+        throw gaveUp(schedule.limitExceeded(null, action, null));
+      }
+      for (int attempt = 1; ; attempt++) {
+        if (! attemptAllowed()) {
+          throw gaveUp(schedule.limitExceeded(CIRCUIT_OPEN, action, lastException));
+        }
+        long timeout = 0;
+        if (attemptExecutor != null) {
+          timeout = Math.min(attemptTimeout, schedule.timeLeftNanos());
+          if (timeout <= 0) {
+            // the last attempt is due right at the deadline, there is no time left to make it
+            throw gaveUp(schedule.limitExceeded(null, action, lastException));
+          }
+        }
+        long mark = wakeUpMark();
+        long started = attemptStarted(action, attempt);
+        boolean accepted = false;
+        boolean failed = false;
+        try {
+          schedule.attemptStarted();
+          try {
+            accepted = call.make(timeout, scope);
+          } finally {
+            schedule.attemptFinished();
+          }
+        } catch (InterruptedException e) {
+          throw e;
+        } catch (Throwable t) {
+          boolean ignored = isExceptionIgnored(t);
+          attemptFailed(action, attempt, started, t, ignored);
+          if (! ignored) {
+            throw t;
+          }
+          lastException = t;
+          failed = true;
+        }
+        // notified out of the attempt, so a throwing listener or breaker can't make it repeat
+        if (accepted) {
+          succeeded(action, attempt, started);
+          return;
+        }
+        if (! failed) {
+          // box only if somebody is going to look at the result
+          resultRejected(action, attempt, started, listener != null ? call.result() : null);
         }
+
+        long delay = nextDelay(schedule, deferring, action, lastException);
+        sleeping(action, attempt, delay);
+        sleep(delay, mark);
+      }
+    } finally {
+      if (scope != null) {
+        TrierScope.restore(previous);
+      }
+    }
+  }
+
+  /**
+   * Makes single attempts for the synchronous loop and keeps the last result, so that primitive
+   * results are not boxed.
+   */
+  private interface Attempt {
+
+    /**
+     * @param timeout The time given to the attempt in nanoseconds, 0 if the attempt is not timed.
+     * @param scope The scope of the loop to carry into a timed attempt, or null.
+     * @return Whether the result is accepted.
+     */
+    boolean make(long timeout, TrierScope scope) throws InterruptedException;
+
+    /**
+     * @return The result of the last attempt.
+     */
+    Object result();
+  }
+
+  private final class ObjectAttempt<T extends X> implements Attempt {
+    private final Supplier<T> call;
+    private final boolean checkResult;
+    private T res;
+
+    ObjectAttempt(Supplier<T> call, boolean checkResult) {
+      this.call = call;
+      this.checkResult = checkResult;
+    }
+
+    @Override
+    public boolean make(long timeout, TrierScope scope) throws InterruptedException {
+      res = timeout == 0 ? call.get() : callTimed(scope != null ? scope.wrap(call) : call, timeout);
+      return ! checkResult || ! isResultIgnored(res);
+    }
+
+    @Override
+    public Object result() {
+      return res;
+    }
+  }
+
+  /**
+   * Every primitive is carried as a long.
+   */
+  private final class PrimitiveAttempt implements Attempt {
+    private final LongSupplier call;
+    private final LongPredicate resultIgnored;
+    private final LongFunction<Object> box;
+    private long res;
+
+    PrimitiveAttempt(LongSupplier call, LongPredicate resultIgnored, LongFunction<Object> box) {
+      this.call = call;
+      this.resultIgnored = resultIgnored;
+      this.box = box;
+    }
+
+    @Override
+    public boolean make(long timeout, TrierScope scope) throws InterruptedException {
+      if (timeout == 0) {
+        res = call.getAsLong();
+      } else {
+        // the result crosses threads, it is boxed anyway
+        Supplier<Long> boxed = call::getAsLong;
+        res = callTimed(scope != null ? scope.wrap(boxed) : boxed, timeout);
       }
+      return ! resultIgnored.test(res);
+    }
+
+    @Override
+    public Object result() {
+      return box.apply(res);
+    }
+  }
+
+  /**
+   * Decides what to do after a failed attempt of a synchronous loop.
+   *
+   * @return The delay before the next attempt, in nanoseconds.
+   */
+  private long nextDelay(Schedule schedule, boolean deferring, Object action, Throwable lastException)
+    throws LimitExceededException {
+    if (deferring && lastException != null) {
+      // the outer trier decides what to do, as if this one was not there
+      throw Trier.<RuntimeException>sneakyThrow(lastException);
+    }
+    long delay = schedule.nextDelayNanos(lastException);
+    if (delay < 0 || deferring) {
+      throw gaveUp(schedule.limitExceeded(delay < 0 ? null : RETRIES_DEFERRED, action, lastException));
+    }
+    if (! retryAllowed()) {
+      throw gaveUp(schedule.limitExceeded(BUDGET_EXHAUSTED, action, lastException));
+    }
+    return delay;
+  }
+
+  /**
+   * Makes a single attempt on the attempt executor and waits for it no longer than the timeout. An
+   * attempt that is late is interrupted and abandoned.
+   *
+   * @param timeout The time given to the attempt, in nanoseconds.
+   */
+  private <T> T callTimed(Supplier<T> call, long timeout) throws InterruptedException {
+    FutureTask<T> task = new FutureTask<>(call::get);
+    attemptExecutor.execute(task);
+    try {
+      return ManagedBlocking.get(task, timeout);
+    } catch (ExecutionException e) {
+      throw Trier.<RuntimeException>sneakyThrow(e.getCause());
+    } catch (TimeoutException e) {
+      task.cancel(true);
+      throw new AttemptTimeoutException(timeout);
+    } catch (InterruptedException e) {
+      task.cancel(true);
+      throw e;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E extends Throwable> E sneakyThrow(Throwable t) throws E {
+    throw (E) t;
+  }
+
+  /**
+   * Same as {@link #tryTo(Supplier)}, but the result is not boxed. Zero results are ignored. The
+   * result predicate of the trier is not used and attempts are never hedged.
+   *
+   * @param s The action to try.
+   * @return The first result that is not zero.
+   */
+  public int tryToInt(IntSupplier s) throws LimitExceededException, InterruptedException {
+    return tryToInt(s, res -> res != 0);
+  }
+
+  /**
+   * Same as {@link #tryToInt(IntSupplier)}, but waits for a result that matches the predicate.
+   *
+   * @param s The action to try.
+   * @param expectedResult The condition the result should satisfy.
+   * @return The first result that matches the predicate.
+   */
+  public int tryToInt(IntSupplier s, IntPredicate expectedResult) throws LimitExceededException, InterruptedException {
+    return (int) tryToPrimitive(s, () -> s.getAsInt(), res -> ! expectedResult.test((int) res), res -> (int) res);
+  }
+
+  /**
+   * @see #tryToInt(IntSupplier)
+   */
+  public long tryToLong(LongSupplier s) throws LimitExceededException, InterruptedException {
+    return tryToLong(s, res -> res != 0);
+  }
+
+  /**
+   * @see #tryToInt(IntSupplier, IntPredicate)
+   */
+  public long tryToLong(LongSupplier s, LongPredicate expectedResult) throws LimitExceededException, InterruptedException {
+    return tryToPrimitive(s, s, res -> ! expectedResult.test(res), res -> res);
+  }
+
+  /**
+   * @see #tryToInt(IntSupplier)
+   */
+  public double tryToDouble(DoubleSupplier s) throws LimitExceededException, InterruptedException {
+    return tryToDouble(s, res -> res != 0.0);
+  }
+
+  /**
+   * @see #tryToInt(IntSupplier, IntPredicate)
+   */
+  public double tryToDouble(DoubleSupplier s, DoublePredicate expectedResult)
+    throws LimitExceededException, InterruptedException {
+    // doubles travel through the loop as raw bits, which is lossless
+    return Double.longBitsToDouble(tryToPrimitive(s, () -> Double.doubleToRawLongBits(s.getAsDouble()),
+      bits -> ! expectedResult.test(Double.longBitsToDouble(bits)), Double::longBitsToDouble));
+  }
+
+  /**
+   * Same as {@link #tryTo(Supplier)}, but the result is not boxed. Waits for the supplier to
+   * return true. The result predicate of the trier is not used and attempts are never hedged.
+   *
+   * @param s The condition to wait for.
+   */
+  public void tryToBoolean(BooleanSupplier s) throws LimitExceededException, InterruptedException {
+    tryToPrimitive(s, () -> s.getAsBoolean() ? 1 : 0, res -> res == 0, res -> res != 0);
+  }
+
+  /**
+   * The retry loop shared by all primitive overloads, every primitive is carried as a long.
+   */
+  private long tryToPrimitive(Object action, LongSupplier s, LongPredicate resultIgnored, LongFunction<Object> box)
+    throws LimitExceededException, InterruptedException {
+    PrimitiveAttempt attempt = new PrimitiveAttempt(s, resultIgnored, box);
+    run(action, attempt);
+    return attempt.res;
+  }
+
+  /**
+   * Applies the function to each element of the collection. After each round the trier sleeps once
+   * and re-tries only the elements that failed or returned an ignored result, the elements that
+   * succeeded are never called again. A round is counted as a single attempt by the limit of the
+   * trier, elements of a round run one after another on the calling thread.
+   *
+   * @param elements The elements to apply the function to.
+   * @param f The function to try.
+   * @return Results in the order of the elements.
+   * @throws BatchLimitExceededException If some elements never succeeded, it holds the results of
+   *         the elements that did succeed. It is a {@link BatchAbortedException} if an element threw
+   *         an exception that is not ignored.
+   */
+  public <T, R extends X> List<R> tryToAll(Collection<T> elements, Function<T, R> f)
+    throws LimitExceededException, InterruptedException {
+    return tryToAll(elements, f, Runnable::run);
+  }
+
+  /**
+   * Same as {@link #tryToAll(Collection, Function)}, but elements of a round run in parallel on the
+   * executor. The calling thread waits for each round to finish and sleeps between rounds.
+   *
+   * @param elements The elements to apply the function to.
+   * @param f The function to try, it must be thread safe.
+   * @param executor The executor to run the attempts on, e.g. a {@link java.util.concurrent.ForkJoinPool}.
+   * @return Results in the order of the elements.
+   * @throws BatchLimitExceededException If some elements never succeeded, it holds the results of
+   *         the elements that did succeed. It is a {@link BatchAbortedException} if an element threw
+   *         an exception that is not ignored.
+   */
+  public <T, R extends X> List<R> tryToAll(Collection<T> elements, Function<T, R> f, Executor executor)
+    throws LimitExceededException, InterruptedException {
+    return new BatchAttempt<>(this, checkNotNull(elements), checkNotNull(f)).run(checkNotNull(executor));
+  }
+
+  /**
+   * Same as {@link #tryTo(Runnable)}, but does not block: attempts run on the scheduler and the next
+   * attempt is scheduled instead of sleeping.
+   *
+   * @param r The action to try.
+   * @return A future that completes when the action succeeds, or fails with
+   *         {@link LimitExceededException} or with an exception that is not ignored.
+   */
+  public CompletableFuture<Void> tryToAsync(Runnable r) {
+    return new AsyncAttempt<Void>(this, () -> { r.run(); return DONE; }, res -> false, r, timer()).start();
+  }
+
+  /**
+   * Same as {@link #tryTo(Supplier)}, but does not block.
+   *
+   * @see #tryToAsync(Runnable)
+   */
+  public <T extends X> CompletableFuture<T> tryToAsync(Supplier<T> s) {
+    return new AsyncAttempt<T>(this, () -> completedFuture(s.get()), this::isResultIgnored, s, timer()).start();
+  }
+
+  /**
+   * Same as {@link #tryTo(Consumer, Object)}, but does not block.
+   *
+   * @see #tryToAsync(Runnable)
+   */
+  public <T> CompletableFuture<Void> tryToAsync(Consumer<T> c, T par) {
+    return new AsyncAttempt<Void>(this, () -> { c.accept(par); return DONE; }, res -> false, c, timer()).start();
+  }
+
+  /**
+   * Same as {@link #tryTo(Function, Object)}, but does not block.
+   *
+   * @see #tryToAsync(Runnable)
+   */
+  public <T, R extends X> CompletableFuture<R> tryToAsync(Function<T, R> f, T par) {
+    return new AsyncAttempt<R>(this, () -> completedFuture(f.apply(par)), this::isResultIgnored, f, timer()).start();
+  }
+
+  /**
+   * Retries an operation that is asynchronous by itself. An attempt fails if the returned stage
+   * completes exceptionally, {@link #isExceptionIgnored(Throwable) ignored exceptions} are checked
+   * against the cause of the failure. No thread is blocked waiting for the stage.
+   *
+   * @param s The operation to try, returns a stage that completes with the result of the attempt.
+   * @return A future that completes with the first result that is not ignored, or fails with
+   *         {@link LimitExceededException} or with an exception that is not ignored.
+   */
+  public <T extends X> CompletableFuture<T> tryToCompose(Supplier<? extends CompletionStage<T>> s) {
+    return new AsyncAttempt<T>(this, s, this::isResultIgnored, s, timer()).start();
+  }
+
+  /**
+   * Same as {@link #tryToCompose(Supplier)}, but passes a parameter to the operation.
+   *
+   * @see #tryToCompose(Supplier)
+   */
+  public <T, R extends X> CompletableFuture<R> tryToCompose(Function<T, ? extends CompletionStage<R>> f, T par) {
+    return new AsyncAttempt<R>(this, () -> f.apply(par), this::isResultIgnored, f, timer()).start();
+  }
+
+  /**
+   * Sets the scheduler to run asynchronous attempts on. By default a shared pool of daemon threads
+   * is used, one per available processor.
+   *
+   * @param scheduler The scheduler to use.
+   * @return A new trier, this one is not changed.
+   */
+  final public Trier<X> scheduledOn(ScheduledExecutorService scheduler) {
+    checkNotNull(scheduler);
+    return with(s -> s.scheduler = scheduler);
+  }
+
+  /**
+   * Makes the trier throw {@link LimitExceededException} without a stack trace. The last ignored
+   * exception is still kept as the cause. Useful when failures are frequent and expected, filling
+   * in the stack trace is the most expensive part of giving up.
+   *
+   * @return A new trier, this one is not changed.
+   */
+  final public Trier<X> withoutStackTrace() {
+    return with(s -> s.writableStackTrace = false);
+  }
+
+  /**
+   * Makes the trier take a token from the shared budget before each retry and put earned tokens
+   * back after each successful call. When the budget is empty the trier gives up at once with
+   * {@link LimitExceededException} instead of sleeping.
+   *
+   * @param retryBudget The budget to share.
+   * @return A new trier, this one is not changed.
+   */
+  final public Trier<X> sharing(RetryBudget retryBudget) {
+    checkNotNull(retryBudget);
+    return with(s -> s.retryBudget = retryBudget);
+  }
+
+  /**
+   * Attaches a circuit breaker to the trier. While the breaker is open the trier gives up at once
+   * with {@link LimitExceededException}. Every attempt that throws counts as a failure, including
+   * attempts that throw ignored exceptions.
+   *
+   * @param circuitBreaker The breaker, it can be shared by several triers.
+   * @return A new trier, this one is not changed.
+   */
+  final public Trier<X> guardedBy(CircuitBreaker circuitBreaker) {
+    checkNotNull(circuitBreaker);
+    return with(s -> s.circuitBreaker = circuitBreaker);
+  }
+
+  /**
+   * Sets a listener to notify about attempts, sleeps and outcomes of the calls.
+   *
+   * @param listener The listener, e.g. {@link TrierStats}.
+   * @return A new trier, this one is not changed.
+   */
+  final public Trier<X> reportingTo(TrierListener listener) {
+    checkNotNull(listener);
+    return with(s -> s.listener = listener);
+  }
+
+  /**
+   * Makes the trier hedge attempts of suppliers and functions: if an attempt takes too long, a copy
+   * of it is started in parallel and the first acceptable result wins. Use for idempotent
+   * operations only. Runnables and consumers are never hedged.
+   *
+   * @param hedging The hedging policy.
+   * @return A new trier, this one is not changed.
+   */
+  final public Trier<X> hedging(Hedging hedging) {
+    checkNotNull(hedging);
+    return with(s -> s.hedging = hedging);
+  }
+
+  /**
+   * Makes {@link #tryTo(Function, Object)} remember accepted results and failures by the parameter.
+   * Use a separate cache for each function, the function is not a part of the key.
+   *
+   * @param resultCache The cache.
+   * @return A new trier, this one is not changed.
+   */
+  final public Trier<X> caching(ResultCache resultCache) {
+    checkNotNull(resultCache);
+    return with(s -> s.resultCache = resultCache);
+  }
+
+  /**
+   * Makes concurrent calls of {@link #tryTo(Function, Object)} with equal parameters share a single
+   * retry loop: the first call runs it, the others wait and get the same result or the same
+   * {@link LimitExceededException}. Triers created from the returned one share the loops with it.
+   * Use for a single function only, the function is not a part of the key.
+   *
+   * @return A new trier, this one is not changed.
+   */
+  final public Trier<X> coalescing() {
+    SingleFlight singleFlight = new SingleFlight();
+    return with(s -> s.singleFlight = singleFlight);
+  }
+
+  /**
+   * Makes the trier wake up before the interval is over when the signal comes, and skip the sleep
+   * if the signal came during the attempt. The sleeper of the trier is not used then. Asynchronous
+   * attempts are not affected.
+   *
+   * @param wakeUpSignal The signal, it can be shared by several triers.
+   * @return A new trier, this one is not changed.
+   */
+  final public Trier<X> wakingUpOn(WakeUpSignal wakeUpSignal) {
+    checkNotNull(wakeUpSignal);
+    return with(s -> s.wakeUpSignal = wakeUpSignal);
+  }
+
+  /**
+   * Makes {@link #tryTo(Supplier) tryTo} run each attempt on the executor and stop waiting for it
+   * when the timeout is over or the deadline of the trier comes, whichever is earlier. The late
+   * attempt is interrupted and abandoned, it fails with {@link AttemptTimeoutException}, which is
+   * always ignored. So the deadline holds even if the action hangs and ignores interrupts, but the
+   * hung action keeps its thread: use a bounded executor. When no time is left for the attempt due
+   * right at the deadline, the trier gives up without making it. Primitive, batch and asynchronous
+   * attempts are not affected.
+   *
+   * @param timeout The longest time a single attempt may take.
+   * @param executor The executor to run the attempts on.
+   * @return A new trier, this one is not changed.
+   */
+  final public Trier<X> timingOut(Duration timeout, Executor executor) {
+    long nanos = timeout.toNanos();
+    if (nanos <= 0) {
+      throw new IllegalArgumentException("Attempt timeout must be positive: " + timeout);
+    }
+    checkNotNull(executor);
+    return with(s -> {
+      s.attemptTimeout = nanos;
+      s.attemptExecutor = executor;
+    });
+  }
+
+  /**
+   * Makes the trier try only once when it is called from an attempt of another trier that has a
+   * deadline, or is itself in a {@link TrierScope}, and leave the retries to the outer one. The
+   * failure of the attempt is rethrown as is, so the outer trier handles it as if the inner one was
+   * not there. A rejected result ends in {@link LimitExceededException}. Called on its own the trier
+   * retries as usual. Asynchronous and batch attempts are not affected.
+   *
+   * <p>The number of attempts is not propagated: an outer trier limited by attempts alone, like
+   * {@link CounterBasedTrier}, opens no scope, so the inner trier does not see it and retries as
+   * usual, and nested loops multiply their attempts. Give the outer trier a deadline to cap them,
+   * e.g. {@code maxAttempts(3).or(maxElapsed(10_000))}.
+   *
+   * @return A new trier, this one is not changed.
+   */
+  final public Trier<X> deferringRetriesToOuter() {
+    return with(s -> s.deferringRetries = true);
+  }
+
+  /**
+   * Makes a single attempt, hedged if the trier is configured to.
+   */
+  final protected <T extends X> T attempt(Supplier<T> s) {
+    return hedging == null ? s.get() : hedging.call(s, this::isResultIgnored);
+  }
+
+  /**
+   * Makes a single attempt, hedged if the trier is configured to.
+   */
+  final protected <T, R extends X> R attempt(Function<T, R> f, T par) {
+    return hedging == null ? f.apply(par) : hedging.call(() -> f.apply(par), this::isResultIgnored);
+  }
+
+  /**
+   * Must be called before each attempt.
+   *
+   * @return Whether the circuit breaker, if any, allows the attempt.
+   */
+  final protected boolean attemptAllowed() {
+    return circuitBreaker == null || circuitBreaker.tryAcquirePermission();
+  }
+
+  /**
+   * Must be called before each attempt.
+   *
+   * @return A mark to pass to {@link #sleep(long, long)}.
+   */
+  final long wakeUpMark() {
+    return wakeUpSignal != null ? wakeUpSignal.generation() : 0;
+  }
+
+  /**
+   * Sleeps before the next attempt, wakes up early on the wake-up signal if there is one.
+   *
+   * @param delay How long to sleep, in nanoseconds.
+   * @param mark The mark taken before the attempt.
+   */
+  final void sleep(long delay, long mark) throws InterruptedException {
+    if (wakeUpSignal != null) {
+      wakeUpSignal.sleepNanos(delay, mark);
+    } else {
+      sleeper().sleepNanos(delay);
+    }
+  }
+
+  /**
+   * Must be called right before each attempt.
+   *
+   * @return The start time of the attempt, to pass to the methods reporting its outcome.
+   */
+  final protected long attemptStarted(Object action, int attempt) {
+    if (listener == null) {
+      return 0;
+    }
+    listener.onAttemptStart(action, attempt);
+    return System.nanoTime();
+  }
+
+  /**
+   * Must be called when an attempt succeeds.
+   */
+  final protected void succeeded(Object action, int attempt, long started) {
+    if (retryBudget != null) {
+      retryBudget.deposit();
+    }
+    if (circuitBreaker != null) {
+      circuitBreaker.onSuccess();
+    }
+    if (listener != null) {
+      listener.onSuccess(action, attempt, System.nanoTime() - started);
+    }
+  }
+
+  /**
+   * Must be called when an attempt returns an ignored result.
+   */
+  final protected void resultRejected(Object action, int attempt, long started, Object result) {
+    if (listener != null) {
+      listener.onResultRejected(action, attempt, System.nanoTime() - started, result);
+    }
+  }
+
+  /**
+   * Must be called when an attempt throws.
+   */
+  final protected void attemptFailed(Object action, int attempt, long started, Throwable t, boolean ignored) {
+    if (circuitBreaker != null) {
+      circuitBreaker.onFailure();
+    }
+    if (listener != null) {
+      listener.onAttemptFailure(action, attempt, System.nanoTime() - started, t, ignored);
+    }
+  }
+
+  /**
+   * Must be called before sleeping between attempts.
+   */
+  final protected void sleeping(Object action, int attempt, long delay) {
+    if (listener != null) {
+      listener.onSleep(action, attempt, delay);
+    }
+  }
+
+  /**
+   * Must be called when the trier gives up.
+   *
+   * @param e The exception to throw.
+   * @return The same exception.
+   */
+  final protected LimitExceededException gaveUp(LimitExceededException e) {
+    if (listener != null) {
+      listener.onLimitExceeded(e.getAction(), e);
+    }
+    return e;
+  }
+
+  /**
+   * Must be called before each retry, once the schedule allowed it and the outer deadline is not
+   * reached, so that a shared budget is not drained by retries that do not happen.
+   *
+   * @return Whether the retry budget, if any, allows one more attempt.
+   */
+  final protected boolean retryAllowed() {
+    return retryBudget == null || retryBudget.tryWithdraw();
+  }
+
+  /**
+   * Creates the exception to report that the limit is exceeded.
+   *
+   * @see LimitExceededException#LimitExceededException(String, int, long, long, Object, Throwable, boolean)
+   */
+  final protected LimitExceededException limitExceeded(String format, int attempts, long elapsed, long limit,
+                                                       Object action, Throwable lastException) {
+    return new LimitExceededException(format, attempts, elapsed, limit, action, lastException, writableStackTrace);
+  }
+
+  final BatchLimitExceededException batchLimitExceeded(LimitExceededException e, List<?> results,
+                                                       List<?> failedElements) {
+    return new BatchLimitExceededException(e, results, failedElements, writableStackTrace);
+  }
+
+  final BatchAbortedException batchAborted(int attempts, long elapsed, Object action, Throwable cause,
+                                           List<?> results, List<?> failedElements) {
+    LimitExceededException e = limitExceeded(BatchAbortedException.ABORTED, attempts, elapsed, 0, action, cause);
+    return new BatchAbortedException(e, results, failedElements, writableStackTrace);
+  }
+
+  /**
+   * Starts polling on the given timer, used by {@link PollingService}.
+   */
+  final <T extends X> CompletableFuture<T> poll(Supplier<T> s, AsyncAttempt.Timer timer) {
+    return new AsyncAttempt<T>(this, () -> completedFuture(s.get()), this::isResultIgnored, s, timer).start();
+  }
+
+  private Trier<X> with(Consumer<Settings<X>> change) {
+    Settings<X> settings = new Settings<>(this);
+    change.accept(settings);
+    return withSettings(settings);
+  }
+
+  private AsyncAttempt.Timer timer() {
+    ScheduledExecutorService scheduler = this.scheduler != null ? this.scheduler : DefaultScheduler.INSTANCE;
+    return (attempt, delay) -> scheduler.schedule(attempt, delay, TimeUnit.NANOSECONDS);
+  }
+
+  @SafeVarargs
+  final public Trier<X> ignoring(Class<? extends Throwable>... ignoredExceptions) {
+    Class<? extends Throwable>[] ignored = ignoredExceptions.clone();
+    // built once here and shared by all copies of the new trier, so that the verdicts it caches are reused
+    ExceptionClassifier exceptionClassifier = new ExceptionClassifier(ignored, abortingExceptions);
+    return with(s -> {
+      s.ignoredExceptions = ignored;
+      s.exceptionClassifier = exceptionClassifier;
+    });
+  }
+
+  /**
+   * Sets exceptions that should not be retried even if they are {@link #ignoring(Class[]) ignored},
+   * e.g. ignore {@code IOException} but abort on {@code FileNotFoundException}. The most specific
+   * class wins: the class of the thrown exception and its superclasses are checked in turn, and the
+   * first one found in either list decides. If a class is in both lists, the trier aborts.
+   *
+   * @param abortingExceptions Exceptions to abort on.
+   * @return A new trier, this one is not changed.
+   */
+  @SafeVarargs
+  final public Trier<X> abortingOn(Class<? extends Throwable>... abortingExceptions) {
+    Class<? extends Throwable>[] aborting = abortingExceptions.clone();
+    ExceptionClassifier exceptionClassifier = new ExceptionClassifier(ignoredExceptions, aborting);
+    return with(s -> {
+      s.abortingExceptions = aborting;
+      s.exceptionClassifier = exceptionClassifier;
+    });
+  }
+
+  final public Trier<X> ignoring(Predicate<X> ignoredResult) {
+    checkNotNull(ignoredResult);
+    return with(s -> s.ignoredResult = ignoredResult);
+  }
+
+  final public Trier<X> until(Predicate<X> expectedResult) {
+    Predicate<X> ignoredResult = expectedResult.negate();
+    return with(s -> s.ignoredResult = ignoredResult);
+  }
+
+  /**
+   * Adds a rule to tell empty results of a domain type, such results are ignored when there is no
+   * {@link #ignoring(Predicate) predicate} set. Rules for subclasses should be added after rules for
+   * their superclasses, the rule added last wins.
+   *
+   * @param type The class of results the rule applies to, including subclasses.
+   * @param isEmpty Returns true for results that should be ignored.
+   * @return A new trier, this one is not changed.
+   */
+  final public <T> Trier<X> treatingAsEmpty(Class<T> type, Predicate<? super T> isEmpty) {
+    ResultFilter resultFilter = this.resultFilter.with(checkNotNull(type), checkNotNull(isEmpty));
+    return with(s -> s.resultFilter = resultFilter);
+  }
+
+  final protected boolean isExceptionIgnored(Throwable t) {
+    if (t instanceof AttemptTimeoutException) {
+      return true;
+
+    } else if (t instanceof InterruptedException) {
+      // an interrupt is a request to stop, never a failure to retry
       return false;
 
+    } else if (exceptionClassifier != null) {
+      return exceptionClassifier.isRetryable(t);
+
     } else {
       // By default ignore all exceptions
       return true;
@@ -77,23 +1081,8 @@ public abstract class Trier<X> {
       return ignoredResult.test(result);
 
     } else {
-      // by default ignore null object values, false boolean values, zero numbers, empty strings and empty collections
-      if (result == null) {
-        return true;
-      }
-      if (result instanceof Number && ((Number) result).doubleValue() == 0.0) {
-        return true;
-      }
-      if (result.equals(false)) {
-        return true;
-      }
-      if (result.equals("")) {
-        return true;
-      }
-      if (result instanceof Collection && ((Collection) result).isEmpty()) {
-        return true;
-      }
-      return false;
+      // by default ignore null, false, zero numbers and empty strings, collections, maps, arrays and optionals
+      return resultFilter.isIgnored(result);
     }
   }
 
@@ -104,4 +1093,21 @@ public abstract class Trier<X> {
       return reference;
     }
   }
+
+  private static class DefaultScheduler {
+    private static final ScheduledExecutorService INSTANCE = create();
+
+    private static ScheduledExecutorService create() {
+      AtomicInteger counter = new AtomicInteger();
+      ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+        Runtime.getRuntime().availableProcessors(), r -> {
+          Thread thread = new Thread(r, "trier-scheduler-" + counter.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+      executor.setRemoveOnCancelPolicy(true);
+      return executor;
+    }
+  }
 }
+
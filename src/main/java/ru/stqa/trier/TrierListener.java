@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+/**
+ * Gets notified about what a trier does. Methods should be fast and must not throw. If a listener
+ * throws anyway, the exception is propagated to the caller, or completes the future of an async
+ * call, and an attempt that has already succeeded is not repeated.
+ *
+ * <p>Methods are called on the threads that make the attempts, so a listener shared by several
+ * triers or used with async or batch calls must be thread-safe:
+ * <ul>
+ *   <li>synchronous calls notify on the calling thread;</li>
+ *   <li>async calls notify on the timer thread that starts an attempt, and on the thread that
+ *   completes the stage returned by the action;</li>
+ *   <li>batch calls notify about attempts at the elements on the executor threads that make them
+ *   when the batch runs in parallel, and about sleeps and giving up on the calling thread.</li>
+ * </ul>
+ *
+ * <p>Durations and delays are in nanoseconds.
+ */
+public interface TrierListener {
+
+  /**
+   * Called before an attempt.
+   *
+   * @param action The action being tried.
+   * @param attempt The number of the attempt, starting from 1.
+   */
+  default void onAttemptStart(Object action, int attempt) {}
+
+  /**
+   * Called when an attempt throws.
+   *
+   * @param action The action being tried.
+   * @param attempt The number of the attempt, starting from 1.
+   * @param duration How long the attempt took.
+   * @param exception The exception thrown.
+   * @param ignored Whether the exception is ignored, otherwise the trier rethrows it.
+   */
+  default void onAttemptFailure(Object action, int attempt, long duration, Throwable exception, boolean ignored) {}
+
+  /**
+   * Called when an attempt returns a result that is ignored.
+   *
+   * @param action The action being tried.
+   * @param attempt The number of the attempt, starting from 1.
+   * @param duration How long the attempt took.
+   * @param result The ignored result.
+   */
+  default void onResultRejected(Object action, int attempt, long duration, Object result) {}
+
+  /**
+   * Called before the trier sleeps between attempts.
+   *
+   * @param action The action being tried.
+   * @param attempt The number of the attempt that has just failed.
+   * @param delay How long the trier is going to sleep, in nanoseconds.
+   */
+  default void onSleep(Object action, int attempt, long delay) {}
+
+  /**
+   * Called when an attempt succeeds.
+   *
+   * @param action The action being tried.
+   * @param attempt The number of the successful attempt, starting from 1.
+   * @param duration How long the attempt took.
+   */
+  default void onSuccess(Object action, int attempt, long duration) {}
+
+  /**
+   * Called when the trier gives up.
+   *
+   * @param action The action being tried.
+   * @param exception The exception the trier is going to throw.
+   */
+  default void onLimitExceeded(Object action, LimitExceededException exception) {}
+}
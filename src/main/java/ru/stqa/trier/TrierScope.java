@@ -0,0 +1,199 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.function.Supplier;
+
+/**
+ * The deadline of the retry loops running on a thread. A retry loop that has a deadline or is
+ * nested in a scope runs in its own scope that ends no later than the scope of the loop it is
+ * nested in, so an inner trier never sleeps past the deadline of an outer one. Loops without a
+ * deadline outside of any scope pay nothing for it. The deadline is taken from the trier when the
+ * loop starts and kept by {@link System#nanoTime()}. The scope is kept in a thread local, use
+ * {@link #wrap(Runnable)} to carry it into tasks that run on other threads.
+ *
+ * <p>Only time is propagated, not the number of attempts. A loop limited by attempts alone opens
+ * no scope, loops nested in it neither shrink nor {@link Trier#deferringRetriesToOuter() defer}
+ * their retries.
+ */
+public final class TrierScope {
+
+  static final String OUTER_DEADLINE =
+    "Outer deadline reached after %1$d attempts to perform action %4$s";
+
+  private static final ThreadLocal<TrierScope> CURRENT = new ThreadLocal<>();
+
+  private final TrierScope parent;
+  // by System.nanoTime, valid only if hasDeadline
+  private final long deadline;
+  private final boolean hasDeadline;
+
+  private TrierScope(TrierScope parent, long deadline, boolean hasDeadline) {
+    this.parent = parent;
+    this.deadline = deadline;
+    this.hasDeadline = hasDeadline;
+  }
+
+  /**
+   * @return The scope of the innermost retry loop running on this thread, or null if there is none.
+   */
+  public static TrierScope current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * @return The time left until the deadline in nanoseconds, {@link Long#MAX_VALUE} if there is no
+   *         deadline.
+   */
+  public long remainingNanos() {
+    return hasDeadline ? Math.max(deadline - System.nanoTime(), 0) : Long.MAX_VALUE;
+  }
+
+  /**
+   * @return Whether this scope is nested in the scope of another retry loop.
+   */
+  public boolean isNested() {
+    return parent != null;
+  }
+
+  /**
+   * @return A task that runs the given one in this scope, on whatever thread it is run.
+   */
+  public Runnable wrap(Runnable task) {
+    return () -> {
+      TrierScope previous = enter();
+      try {
+        task.run();
+      } finally {
+        restore(previous);
+      }
+    };
+  }
+
+  /**
+   * @return A supplier that calls the given one in this scope, on whatever thread it is called.
+   */
+  public <T> Supplier<T> wrap(Supplier<T> task) {
+    return () -> {
+      TrierScope previous = enter();
+      try {
+        return task.get();
+      } finally {
+        restore(previous);
+      }
+    };
+  }
+
+  /**
+   * Creates a scope nested in the current one, it is not entered yet.
+   *
+   * @param timeLeft The time left by the schedule of the new loop, in nanoseconds.
+   * @return The new scope, or null if there is no current scope and no deadline to pass on.
+   */
+  static TrierScope open(long timeLeft) {
+    TrierScope parent = CURRENT.get();
+    if (parent == null && timeLeft == Long.MAX_VALUE) {
+      return null;
+    }
+    long now = System.nanoTime();
+    boolean hasDeadline = timeLeft != Long.MAX_VALUE;
+    long deadline = hasDeadline ? now + timeLeft : 0;
+    if (parent != null && parent.hasDeadline && (! hasDeadline || parent.deadline - deadline < 0)) {
+      deadline = parent.deadline;
+      hasDeadline = true;
+    }
+    return new TrierScope(parent, deadline, hasDeadline);
+  }
+
+  /**
+   * Makes this scope current on this thread.
+   *
+   * @return The previous scope to {@link #restore(TrierScope) restore} when the work is done.
+   */
+  TrierScope enter() {
+    TrierScope previous = CURRENT.get();
+    CURRENT.set(this);
+    return previous;
+  }
+
+  static void restore(TrierScope previous) {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+
+  /**
+   * The schedule keeps the own deadline of the loop by the clock of the trier, it is bound only by
+   * the deadline of the outer loop.
+   *
+   * @return A schedule that gives up instead of sleeping past the deadline of the outer scope and
+   *         does not let a single attempt run past it.
+   */
+  Trier.Schedule bound(Trier.Schedule schedule) {
+    TrierScope outer = parent;
+    if (outer == null || ! outer.hasDeadline) {
+      return schedule;
+    }
+    return new Trier.Schedule() {
+      private boolean deadlineReached = false;
+
+      @Override
+      public long nextDelay(Throwable lastException) {
+        long next = nextDelayNanos(lastException);
+        return next <= 0 ? next : (next - 1) / 1_000_000 + 1;
+      }
+
+      @Override
+      public long nextDelayNanos(Throwable lastException) {
+        long delay = schedule.nextDelayNanos(lastException);
+        if (delay >= 0 && delay >= outer.remainingNanos()) {
+          deadlineReached = true;
+          return -1;
+        }
+        return delay;
+      }
+
+      @Override
+      public boolean isExhausted() {
+        return schedule.isExhausted();
+      }
+
+      @Override
+      public void attemptStarted() {
+        schedule.attemptStarted();
+      }
+
+      @Override
+      public void attemptFinished() {
+        schedule.attemptFinished();
+      }
+
+      @Override
+      public long timeLeftNanos() {
+        return Math.min(schedule.timeLeftNanos(), outer.remainingNanos());
+      }
+
+      @Override
+      public LimitExceededException limitExceeded(String format, Object action, Throwable lastException) {
+        return schedule.limitExceeded(format == null && deadlineReached ? OUTER_DEADLINE : format,
+          action, lastException);
+      }
+    };
+  }
+}
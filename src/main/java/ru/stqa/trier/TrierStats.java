@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener that collects statistics of a trier: counters of attempts and their outcomes, and
+ * histograms of attempt durations, sleeps and attempts per successful call. Recording takes no
+ * locks and does not allocate.
+ *
+ * <p>The statistics can be exposed via JMX with {@link #register(String)}.
+ */
+public class TrierStats implements TrierListener, TrierStatsMBean {
+
+  private final LongAdder attempts = new LongAdder();
+  private final LongAdder successes = new LongAdder();
+  private final LongAdder ignoredExceptions = new LongAdder();
+  private final LongAdder rethrownExceptions = new LongAdder();
+  private final LongAdder rejectedResults = new LongAdder();
+  private final LongAdder limitExceeded = new LongAdder();
+
+  private final Histogram attemptDurations = new Histogram();
+  private final Histogram sleeps = new Histogram();
+  private final Histogram attemptsPerSuccess = new Histogram();
+
+  @Override
+  public void onAttemptStart(Object action, int attempt) {
+    attempts.increment();
+  }
+
+  @Override
+  public void onAttemptFailure(Object action, int attempt, long duration, Throwable exception, boolean ignored) {
+    attemptDurations.record(duration);
+    if (ignored) {
+      ignoredExceptions.increment();
+    } else {
+      rethrownExceptions.increment();
+    }
+  }
+
+  @Override
+  public void onResultRejected(Object action, int attempt, long duration, Object result) {
+    attemptDurations.record(duration);
+    rejectedResults.increment();
+  }
+
+  @Override
+  public void onSleep(Object action, int attempt, long delay) {
+    sleeps.record(delay);
+  }
+
+  @Override
+  public void onSuccess(Object action, int attempt, long duration) {
+    attemptDurations.record(duration);
+    attemptsPerSuccess.record(attempt);
+    successes.increment();
+  }
+
+  @Override
+  public void onLimitExceeded(Object action, LimitExceededException exception) {
+    limitExceeded.increment();
+  }
+
+  /**
+   * @return Durations of attempts, in nanoseconds.
+   */
+  public Histogram getAttemptDurations() {
+    return attemptDurations;
+  }
+
+  /**
+   * @return Sleeps between attempts, in nanoseconds.
+   */
+  public Histogram getSleepDurations() {
+    return sleeps;
+  }
+
+  /**
+   * @return Number of attempts it took to succeed.
+   */
+  public Histogram getAttemptsPerSuccess() {
+    return attemptsPerSuccess;
+  }
+
+  /**
+   * Registers the statistics in the platform MBean server.
+   *
+   * @param name The name to tell this trier from others.
+   * @return The name of the registered MBean.
+   * @throws JMException If the MBean can't be registered.
+   */
+  public ObjectName register(String name) throws JMException {
+    ObjectName objectName = new ObjectName("ru.stqa.trier:type=TrierStats,name=" + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    return objectName;
+  }
+
+  @Override
+  public long getAttempts() {
+    return attempts.sum();
+  }
+
+  @Override
+  public long getSuccesses() {
+    return successes.sum();
+  }
+
+  @Override
+  public long getIgnoredExceptions() {
+    return ignoredExceptions.sum();
+  }
+
+  @Override
+  public long getRethrownExceptions() {
+    return rethrownExceptions.sum();
+  }
+
+  @Override
+  public long getRejectedResults() {
+    return rejectedResults.sum();
+  }
+
+  @Override
+  public long getSleeps() {
+    return sleeps.getCount();
+  }
+
+  @Override
+  public long getLimitExceeded() {
+    return limitExceeded.sum();
+  }
+
+  @Override
+  public double getMeanAttemptsPerSuccess() {
+    return attemptsPerSuccess.getMean();
+  }
+
+  @Override
+  public double getMeanAttemptMicros() {
+    return attemptDurations.getMean() / 1000;
+  }
+
+  @Override
+  public long getAttemptMicros50() {
+    return TimeUnit.NANOSECONDS.toMicros(attemptDurations.getPercentile(50));
+  }
+
+  @Override
+  public long getAttemptMicros99() {
+    return TimeUnit.NANOSECONDS.toMicros(attemptDurations.getPercentile(99));
+  }
+
+  @Override
+  public long getSleepMicros99() {
+    return TimeUnit.NANOSECONDS.toMicros(sleeps.getPercentile(99));
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+/**
+ * JMX view of {@link TrierStats}. Durations and delays are in microseconds.
+ */
+public interface TrierStatsMBean {
+
+  long getAttempts();
+
+  long getSuccesses();
+
+  long getIgnoredExceptions();
+
+  long getRethrownExceptions();
+
+  long getRejectedResults();
+
+  long getSleeps();
+
+  long getLimitExceeded();
+
+  double getMeanAttemptsPerSuccess();
+
+  double getMeanAttemptMicros();
+
+  long getAttemptMicros50();
+
+  long getAttemptMicros99();
+
+  long getSleepMicros99();
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lets a producer wake up triers that wait for something it produces. A trier
+ * {@link Trier#wakingUpOn(WakeUpSignal) waking up on} the signal sleeps between attempts until
+ * either the interval is over or {@link #signal()} is called, so the interval is only an upper
+ * bound of the latency. A signal that comes while an attempt is in progress is not lost, the
+ * trier does not sleep after that attempt at all.
+ *
+ * <p>It is also a plain {@link Sleeper} that wakes up on signals that come during the sleep. Like
+ * the default sleeper, it blocks through {@link ForkJoinPool#managedBlock} on a fork-join worker.
+ */
+public class WakeUpSignal implements Sleeper {
+
+  private final AtomicLong generation = new AtomicLong();
+  private final Set<Thread> sleeping = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Wakes up all the triers that sleep on this signal now, and makes the ones that are making an
+   * attempt now skip the next sleep. Can be used as a listener, e.g. {@code signal::signal}.
+   */
+  public void signal() {
+    generation.incrementAndGet();
+    for (Thread thread : sleeping) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  @Override
+  public void sleep(long duration) throws InterruptedException {
+    sleepNanos(TimeUnit.MILLISECONDS.toNanos(duration), generation.get());
+  }
+
+  @Override
+  public void sleepNanos(long duration) throws InterruptedException {
+    sleepNanos(duration, generation.get());
+  }
+
+  /**
+   * @return A mark to pass to {@link #sleepNanos(long, long)}, to tell the signals that come after it.
+   */
+  long generation() {
+    return generation.get();
+  }
+
+  /**
+   * Sleeps unless there was a signal after the mark was taken.
+   */
+  void sleepNanos(long duration, long since) throws InterruptedException {
+    Thread current = Thread.currentThread();
+    sleeping.add(current);
+    try {
+      long deadline = System.nanoTime() + duration;
+      // the thread is registered before the check, so a signal either is seen here or unparks it
+      ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+        @Override
+        public boolean block() throws InterruptedException {
+          if (Thread.interrupted()) {
+            throw new InterruptedException();
+          }
+          if (! isReleasable()) {
+            LockSupport.parkNanos(WakeUpSignal.this, deadline - System.nanoTime());
+          }
+          return isReleasable();
+        }
+
+        @Override
+        public boolean isReleasable() {
+          return generation.get() != since || deadline - System.nanoTime() <= 0;
+        }
+      });
+    } finally {
+      sleeping.remove(current);
+    }
+  }
+}
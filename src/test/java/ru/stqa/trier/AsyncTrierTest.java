@@ -0,0 +1,202 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AsyncTrierTest {
+
+  private Trier<Object> trier;
+
+  @Mock
+  Runnable runnable;
+
+  @Mock
+  Supplier<Object> supplier;
+
+  @Mock
+  Consumer<String> consumer;
+
+  @Mock
+  Function<String, Object> function;
+
+  @Mock
+  Supplier<CompletionStage<Object>> stageSupplier;
+
+  @Mock
+  Function<String, CompletionStage<Object>> stageFunction;
+
+  @BeforeEach
+  void init() {
+    trier = new CounterBasedTrier<>(5, 1L);
+    MockitoAnnotations.initMocks(this);
+  }
+
+  @Test
+  void shouldCompleteWhenTheRunnableSucceeds() throws Exception {
+    doThrow(NumberFormatException.class).doNothing().when(runnable).run();
+    assertThat(trier.tryToAsync(runnable).get(1, TimeUnit.SECONDS), nullValue());
+    verify(runnable, times(2)).run();
+  }
+
+  @Test
+  void shouldCompleteWithTheFirstAcceptedResult() throws Exception {
+    when(supplier.get()).thenThrow(NumberFormatException.class).thenReturn("FAIL").thenReturn("OK");
+    assertThat(trier.until(res -> res.equals("OK")).tryToAsync(supplier).get(1, TimeUnit.SECONDS), is("OK"));
+    verify(supplier, times(3)).get();
+  }
+
+  @Test
+  void shouldPassTheParameterToTheConsumer() throws Exception {
+    doThrow(NumberFormatException.class).doNothing().when(consumer).accept("IN");
+    trier.tryToAsync(consumer, "IN").get(1, TimeUnit.SECONDS);
+    verify(consumer, times(2)).accept("IN");
+  }
+
+  @Test
+  void shouldPassTheParameterToTheFunction() throws Exception {
+    when(function.apply("IN")).thenReturn("").thenReturn("OK");
+    assertThat(trier.tryToAsync(function, "IN").get(1, TimeUnit.SECONDS), is("OK"));
+    verify(function, times(2)).apply("IN");
+  }
+
+  @Test
+  void shouldFailWithLimitExceededException() {
+    when(supplier.get()).thenThrow(NumberFormatException.class);
+    ExecutionException thrown = assertThrows(ExecutionException.class,
+      () -> trier.ignoring(NumberFormatException.class).tryToAsync(supplier).get(1, TimeUnit.SECONDS));
+    assertThat(thrown.getCause(), instanceOf(LimitExceededException.class));
+    assertThat(thrown.getCause().getCause(), instanceOf(NumberFormatException.class));
+    verify(supplier, times(5)).get();
+  }
+
+  @Test
+  void shouldFailWithNotIgnoredException() {
+    when(supplier.get()).thenThrow(NumberFormatException.class).thenThrow(ArrayIndexOutOfBoundsException.class);
+    ExecutionException thrown = assertThrows(ExecutionException.class,
+      () -> trier.ignoring(NumberFormatException.class).tryToAsync(supplier).get(1, TimeUnit.SECONDS));
+    assertThat(thrown.getCause(), instanceOf(ArrayIndexOutOfBoundsException.class));
+    verify(supplier, times(2)).get();
+  }
+
+  @Test
+  void shouldTimeOutWithTimeBasedTrier() {
+    Trier<Object> timeBased = new TimeBasedTrier<>(20L, 1L);
+    when(supplier.get()).thenReturn(false);
+    ExecutionException thrown = assertThrows(ExecutionException.class,
+      () -> timeBased.tryToAsync(supplier).get(1, TimeUnit.SECONDS));
+    assertThat(thrown.getCause(), instanceOf(LimitExceededException.class));
+  }
+
+  @Test
+  void shouldFailIfListenerThrowsOnAttemptStart() {
+    TrierListener listener = mock(TrierListener.class);
+    doThrow(IllegalStateException.class).when(listener).onAttemptStart(any(), anyInt());
+    when(supplier.get()).thenReturn("OK");
+    assertListenerFailure(trier.reportingTo(listener), 0);
+  }
+
+  @Test
+  void shouldFailIfListenerThrowsOnAttemptFailure() {
+    TrierListener listener = mock(TrierListener.class);
+    doThrow(IllegalStateException.class).when(listener).onAttemptFailure(any(), anyInt(), anyLong(), any(), anyBoolean());
+    when(supplier.get()).thenThrow(NumberFormatException.class);
+    assertListenerFailure(trier.reportingTo(listener), 1);
+  }
+
+  @Test
+  void shouldFailIfListenerThrowsOnSleep() {
+    TrierListener listener = mock(TrierListener.class);
+    doThrow(IllegalStateException.class).when(listener).onSleep(any(), anyInt(), anyLong());
+    when(supplier.get()).thenThrow(NumberFormatException.class);
+    assertListenerFailure(trier.reportingTo(listener), 1);
+  }
+
+  @Test
+  void shouldFailIfListenerThrowsOnLimitExceeded() {
+    TrierListener listener = mock(TrierListener.class);
+    doThrow(IllegalStateException.class).when(listener).onLimitExceeded(any(), any());
+    when(supplier.get()).thenThrow(NumberFormatException.class);
+    assertListenerFailure(new CounterBasedTrier<>(1, 1L).reportingTo(listener), 1);
+  }
+
+  @Test
+  void shouldRetryFailedStages() throws Exception {
+    CompletableFuture<Object> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new CompletionException(new NumberFormatException()));
+    CompletableFuture<Object> pending = new CompletableFuture<>();
+    when(stageSupplier.get()).thenReturn(failed).thenReturn(pending);
+    CompletableFuture<Object> result = trier.ignoring(NumberFormatException.class).tryToCompose(stageSupplier);
+    pending.complete("OK");
+    assertThat(result.get(1, TimeUnit.SECONDS), is("OK"));
+    verify(stageSupplier, times(2)).get();
+  }
+
+  @Test
+  void shouldRetryStagesCompletedWithIgnoredResult() throws Exception {
+    when(stageFunction.apply("IN"))
+      .thenReturn(CompletableFuture.completedFuture("FAIL")).thenReturn(CompletableFuture.completedFuture("OK"));
+    assertThat(trier.until(res -> res.equals("OK")).tryToCompose(stageFunction, "IN").get(1, TimeUnit.SECONDS), is("OK"));
+    verify(stageFunction, times(2)).apply("IN");
+  }
+
+  @Test
+  void shouldFailWithUnwrappedNotIgnoredExceptionOfTheStage() {
+    CompletableFuture<Object> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new CompletionException(new ArrayIndexOutOfBoundsException()));
+    when(stageSupplier.get()).thenReturn(failed);
+    ExecutionException thrown = assertThrows(ExecutionException.class,
+      () -> trier.ignoring(NumberFormatException.class).tryToCompose(stageSupplier).get(1, TimeUnit.SECONDS));
+    assertThat(thrown.getCause(), instanceOf(ArrayIndexOutOfBoundsException.class));
+    verify(stageSupplier, times(1)).get();
+  }
+
+  private void assertListenerFailure(Trier<Object> trier, int attempts) {
+    ExecutionException thrown = assertThrows(ExecutionException.class,
+      () -> trier.tryToAsync(supplier).get(10, TimeUnit.SECONDS));
+    assertThat(thrown.getCause(), instanceOf(IllegalStateException.class));
+    verify(supplier, times(attempts)).get();
+  }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class AttemptTimeoutTest {
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @AfterEach
+  void shutdown() {
+    release.countDown();
+    executor.shutdownNow();
+  }
+
+  /**
+   * Blocks until the test is over, interrupts are ignored.
+   */
+  private Object hang() {
+    while (true) {
+      try {
+        release.await();
+        return "LATE";
+      } catch (InterruptedException e) {
+        // keep hanging
+      }
+    }
+  }
+
+  @Test
+  void shouldAbandonHungAttemptAndTryAgain() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    Trier<Object> trier = new CounterBasedTrier<>(3, 1L).timingOut(Duration.ofMillis(50), executor);
+    Supplier<Object> s = () -> attempts.incrementAndGet() == 1 ? hang() : "OK";
+    long started = System.nanoTime();
+    assertThat(trier.tryTo(s), is("OK"));
+    assertThat(System.nanoTime() - started, lessThan(TimeUnit.SECONDS.toNanos(1)));
+    assertThat(attempts.get(), is(2));
+  }
+
+  @Test
+  void shouldAbandonHungPrimitiveAttempt() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    Trier<Object> trier = new CounterBasedTrier<>(3, 1L).timingOut(Duration.ofMillis(50), executor);
+    assertThat(trier.tryToInt(() -> {
+      if (attempts.incrementAndGet() == 1) {
+        hang();
+      }
+      return 42;
+    }), is(42));
+    assertThat(attempts.get(), is(2));
+  }
+
+  @Test
+  void shouldNotReportInterruptOfPrimitiveAttemptAsFailure() {
+    TrierListener listener = mock(TrierListener.class);
+    Trier<Object> trier = new CounterBasedTrier<>(3, 1L).timingOut(Duration.ofSeconds(10), executor)
+      .reportingTo(listener);
+    Thread.currentThread().interrupt();
+    assertThrows(InterruptedException.class, () -> trier.tryToLong(() -> 1L));
+    verify(listener, never()).onAttemptFailure(any(), anyInt(), anyLong(), any(), anyBoolean());
+  }
+
+  @Test
+  void shouldInterruptLateAttempt() throws Exception {
+    CountDownLatch interrupted = new CountDownLatch(1);
+    AtomicInteger attempts = new AtomicInteger();
+    Trier<Object> trier = new CounterBasedTrier<>(3, 1L).timingOut(Duration.ofMillis(50), executor);
+    Supplier<Object> s = () -> {
+      if (attempts.incrementAndGet() == 1) {
+        try {
+          Thread.sleep(10_000);
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+        }
+      }
+      return "OK";
+    };
+    assertThat(trier.tryTo(s), is("OK"));
+    assertThat(interrupted.await(1, TimeUnit.SECONDS), is(true));
+  }
+
+  @Test
+  void shouldHoldTheDeadlineAgainstUncooperativeAction() {
+    Trier<Object> trier = new TimeBasedTrier<>(200L, 10L).timingOut(Duration.ofSeconds(10), executor);
+    Supplier<Object> s = this::hang;
+    long started = System.nanoTime();
+    LimitExceededException thrown = assertThrows(LimitExceededException.class, () -> trier.tryTo(s));
+    assertThat(System.nanoTime() - started, lessThan(TimeUnit.MILLISECONDS.toNanos(500)));
+    assertThat(thrown.getCause(), instanceOf(AttemptTimeoutException.class));
+  }
+
+  @Test
+  void shouldNotSubmitAttemptWithNoTimeLeft() {
+    TestingClock clock = new TestingClock();
+    AtomicInteger attempts = new AtomicInteger();
+    Trier<Object> trier = new TimeBasedTrier<>(10L, clock, clock, 4L).timingOut(Duration.ofSeconds(1), executor);
+    Supplier<Object> s = () -> {
+      attempts.incrementAndGet();
+      throw new NumberFormatException();
+    };
+    LimitExceededException thrown = assertThrows(LimitExceededException.class, () -> trier.tryTo(s));
+    // attempts at 0, 4 and 8, none at the deadline
+    assertThat(attempts.get(), is(3));
+    assertThat(thrown.getCause(), instanceOf(NumberFormatException.class));
+    assertThat(thrown.getMessage(), startsWith("Timed out after 10 milliseconds"));
+  }
+
+  @Test
+  void shouldRejectNotPositiveTimeouts() {
+    Trier<Object> trier = new CounterBasedTrier<>(3, 1L);
+    assertThrows(IllegalArgumentException.class, () -> trier.timingOut(Duration.ZERO, executor));
+    assertThrows(IllegalArgumentException.class, () -> trier.timingOut(Duration.ofMillis(-1), executor));
+  }
+
+  @Test
+  void timeoutShouldBeIgnoredEvenIfNotListed() {
+    Trier<Object> trier = new CounterBasedTrier<>(2, 1L)
+      .ignoring(NumberFormatException.class).timingOut(Duration.ofMillis(20), executor);
+    Supplier<Object> s = this::hang;
+    LimitExceededException thrown = assertThrows(LimitExceededException.class, () -> trier.tryTo(s));
+    assertThat(thrown.getAttempts(), is(2));
+    assertThat(thrown.getCause(), instanceOf(AttemptTimeoutException.class));
+  }
+
+  @Test
+  void shouldRethrowNotIgnoredExceptionOfTheAttempt() {
+    Trier<Object> trier = new CounterBasedTrier<>(3, 1L)
+      .ignoring(NumberFormatException.class).timingOut(Duration.ofSeconds(1), executor);
+    Supplier<Object> s = () -> { throw new ArrayIndexOutOfBoundsException(); };
+    assertThrows(ArrayIndexOutOfBoundsException.class, () -> trier.tryTo(s));
+  }
+
+  @Test
+  void shouldStopWaitingWhenInterrupted() throws Exception {
+    Trier<Object> trier = new CounterBasedTrier<>(3, 1L).timingOut(Duration.ofSeconds(10), executor);
+    Supplier<Object> s = this::hang;
+    AtomicReference<Throwable> thrown = new AtomicReference<>();
+    Thread caller = new Thread(() -> {
+      try {
+        trier.tryTo(s);
+      } catch (Throwable t) {
+        thrown.set(t);
+      }
+    });
+    caller.start();
+    Thread.sleep(50);
+    caller.interrupt();
+    caller.join(1000);
+    assertThat(thrown.get(), instanceOf(InterruptedException.class));
+  }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BackoffTest {
+
+  @Test
+  void fixedBackoffShouldAlwaysReturnTheSameDelay() {
+    Backoff backoff = Backoff.fixed(10);
+    assertThat(backoff.delay(1, 0, 0, null), is(10L));
+    assertThat(backoff.delay(100, 5000, 10, null), is(10L));
+  }
+
+  @Test
+  void linearBackoffShouldGrowByIncrement() {
+    Backoff backoff = Backoff.linear(10, 5);
+    assertThat(backoff.delay(1, 0, 0, null), is(10L));
+    assertThat(backoff.delay(2, 0, 10, null), is(15L));
+    assertThat(backoff.delay(5, 0, 25, null), is(30L));
+  }
+
+  @Test
+  void exponentialBackoffShouldDoubleUpToCap() {
+    Backoff backoff = Backoff.exponential(10, 100);
+    assertThat(backoff.delay(1, 0, 0, null), is(10L));
+    assertThat(backoff.delay(2, 0, 10, null), is(20L));
+    assertThat(backoff.delay(4, 0, 40, null), is(80L));
+    assertThat(backoff.delay(5, 0, 80, null), is(100L));
+    assertThat(backoff.delay(Integer.MAX_VALUE, 0, 100, null), is(100L));
+  }
+
+  @Test
+  void fullJitterShouldStayBelowExponentialDelay() {
+    Backoff backoff = Backoff.fullJitter(10, 100);
+    for (int i = 0; i < 100; i++) {
+      assertThat(backoff.delay(3, 0, 0, null), allOf(greaterThanOrEqualTo(0L), lessThan(40L)));
+      assertThat(backoff.delay(10, 0, 0, null), allOf(greaterThanOrEqualTo(0L), lessThan(100L)));
+    }
+  }
+
+  @Test
+  void decorrelatedJitterShouldStayBetweenBaseAndTripledPreviousDelay() {
+    Backoff backoff = Backoff.decorrelatedJitter(10, 100);
+    for (int i = 0; i < 100; i++) {
+      assertThat(backoff.delay(1, 0, 0, null), allOf(greaterThanOrEqualTo(10L), lessThan(30L)));
+      assertThat(backoff.delay(2, 0, 20, null), allOf(greaterThanOrEqualTo(10L), lessThan(60L)));
+      assertThat(backoff.delay(3, 0, 90, null), allOf(greaterThanOrEqualTo(10L), lessThanOrEqualTo(100L)));
+    }
+  }
+
+  @Test
+  void shouldNotAcceptNegativeDelays() {
+    assertThrows(IllegalArgumentException.class, () -> Backoff.fixed(-1));
+  }
+
+  @Test
+  void counterBasedTrierShouldSleepAsBackoffSays() throws InterruptedException {
+    TestingClock clock = new TestingClock();
+    Trier<Object> trier = new CounterBasedTrier<>(4, clock, clock, Backoff.exponential(1, 100));
+    Supplier<Object> s = () -> null;
+    assertThrows(LimitExceededException.class, () -> trier.tryTo(s));
+    assertThat(clock.now(), is(1L + 2L + 4L));
+  }
+
+  @Test
+  void timeBasedTrierShouldSleepAsBackoffSays() throws InterruptedException {
+    TestingClock clock = new TestingClock();
+    Trier<Object> trier = new TimeBasedTrier<>(10, clock, clock, Backoff.linear(1, 1));
+    Supplier<Object> s = () -> null;
+    assertThrows(LimitExceededException.class, () -> trier.tryTo(s));
+    assertThat(clock.now(), is(1L + 2L + 3L + 4L));
+  }
+
+}
@@ -19,50 +19,72 @@ package ru.stqa.trier;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class BasicTrierTest {
 
-  private Trier trier;
+  private Trier<Object> trier;
 
   @BeforeEach
   void init() {
-    trier = new CounterBasedTrier(5, new TestingClock(), 1L);
+    trier = new CounterBasedTrier<>(5, new TestingClock(), 1L);
+  }
+
+  @Test
+  void shouldReturnNewTrierWhenIgnoringExceptions() throws Exception {
+    Trier<Object> ignoring = trier.ignoring(NumberFormatException.class);
+    assertThat(ignoring, not(sameInstance(trier)));
+    Supplier<Object> s = () -> { throw new NumberFormatException(); };
+    assertThrows(LimitExceededException.class, () -> ignoring.tryTo(s));
+    assertThrows(LimitExceededException.class, () -> trier.tryTo(s));
+    assertThrows(NumberFormatException.class, () -> ignoring.abortingOn(NumberFormatException.class).tryTo(s));
+    assertThrows(LimitExceededException.class, () -> ignoring.tryTo(s));
   }
 
   @Test
-  void shouldNotAllowToResetIgnoredExceptions() {
-    trier.ignoring(NumberFormatException.class);
-    assertThrows(IllegalStateException.class,
-      () -> trier.ignoring(NumberFormatException.class));
+  void shouldReplaceIgnoredExceptions() {
+    Supplier<Object> s = () -> { throw new NumberFormatException(); };
+    Trier<Object> replaced = trier.ignoring(NumberFormatException.class).ignoring(IllegalStateException.class);
+    assertThrows(NumberFormatException.class, () -> replaced.tryTo(s));
   }
 
   @Test
-  void shouldNotAllowToResetIgnoredResult() {
-    trier.ignoring(res -> res.equals("FAIL"));
-    assertThrows(IllegalStateException.class,
-      () -> trier.ignoring(res -> res.equals("FAIL")));
+  void shouldNotBeAffectedByChangesOfTheIgnoredExceptionsArray() {
+    @SuppressWarnings("unchecked")
+    Class<? extends Throwable>[] ignored = new Class[] {NumberFormatException.class};
+    Trier<Object> ignoring = trier.ignoring(ignored);
+    ignored[0] = IllegalStateException.class;
+    assertThrows(LimitExceededException.class, () -> ignoring.tryTo(() -> { throw new NumberFormatException(); }));
   }
 
   @Test
-  void shouldNotAllowToResetIgnoredResultWithUnexpectedResult() {
-    trier.ignoring(res -> res.equals("FAIL"));
-    assertThrows(IllegalStateException.class,
-      () -> trier.until(res -> res.equals("OK")));
+  void shouldReturnNewTrierWhenSettingExpectedResult() throws Exception {
+    Trier<Object> until = trier.until(res -> res.equals("OK"));
+    assertThat(until, not(sameInstance(trier)));
+    assertThrows(LimitExceededException.class, () -> until.tryTo(() -> "FAIL"));
+    assertThat(trier.tryTo(() -> "FAIL"), is("FAIL"));
   }
 
   @Test
-  void shouldNotAllowToResetUnexpectedResult() {
-    trier.until(res -> res.equals("OK"));
-    assertThrows(IllegalStateException.class,
-      () -> trier.until(res -> res.equals("OK")));
+  void shouldReplaceIgnoredResultWithExpectedResult() throws Exception {
+    Trier<Object> replaced = trier.ignoring(res -> res.equals("FAIL")).until(res -> res.equals("FAIL"));
+    assertThat(replaced.tryTo(() -> "FAIL"), is("FAIL"));
   }
 
   @Test
-  void shouldNotAllowToResetUnexpectedResultWithIgnoredResult() {
-    trier.until(res -> res.equals("OK"));
-    assertThrows(IllegalStateException.class,
-      () -> trier.ignoring(res -> res.equals("FAIL")));
+  void shouldKeepTheLimitOfTheOriginalTrier() {
+    TestingClock clock = new TestingClock();
+    Trier<Object> copy = new CounterBasedTrier<>(3, clock, clock, Backoff.fixed(10)).withoutStackTrace();
+    LimitExceededException thrown = assertThrows(LimitExceededException.class, () -> copy.tryTo(() -> null));
+    assertThat(thrown.getAttempts(), is(3));
+    assertThat(thrown.getStackTrace().length, is(0));
+    assertThat(clock.now(), is(20L));
   }
 
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BatchTrierTest {
+
+  private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+
+  private Function<String, String> failingTimes(int times) {
+    return s -> {
+      int call = calls.computeIfAbsent(s, k -> new AtomicInteger()).incrementAndGet();
+      if (s.startsWith("bad") && call <= times) {
+        throw new NumberFormatException(s);
+      }
+      return s.toUpperCase();
+    };
+  }
+
+  private int callsOf(String s) {
+    return calls.get(s).get();
+  }
+
+  @Test
+  void shouldRetryOnlyFailedElements() throws Exception {
+    TestingClock clock = new TestingClock();
+    Trier<Object> trier = new CounterBasedTrier<>(5, clock, clock, Backoff.fixed(10));
+    List<String> results = trier.tryToAll(Arrays.asList("a", "bad1", "b", "bad2"), failingTimes(2));
+    assertThat(results, contains("A", "BAD1", "B", "BAD2"));
+    assertThat(callsOf("a"), is(1));
+    assertThat(callsOf("b"), is(1));
+    assertThat(callsOf("bad1"), is(3));
+    assertThat(callsOf("bad2"), is(3));
+    assertThat(clock.now(), is(20L));
+  }
+
+  @Test
+  void shouldRetryElementsInParallel() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Trier<Object> trier = new CounterBasedTrier<>(5, 1L);
+      List<String> results = trier.tryToAll(Arrays.asList("a", "bad1", "b", "bad2"), failingTimes(1), executor);
+      assertThat(results, contains("A", "BAD1", "B", "BAD2"));
+      assertThat(callsOf("a"), is(1));
+      assertThat(callsOf("bad1"), is(2));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void shouldKeepResultsOfSucceededElementsWhenTheLimitIsExceeded() {
+    TestingClock clock = new TestingClock();
+    Trier<Object> trier = new CounterBasedTrier<>(3, clock, clock, Backoff.fixed(10));
+    BatchLimitExceededException thrown = assertThrows(BatchLimitExceededException.class,
+      () -> trier.tryToAll(Arrays.asList("a", "bad1", "b"), failingTimes(5)));
+    assertThat(thrown.getResults(), contains("A", null, "B"));
+    assertThat(thrown.getFailedElements(), contains("bad1"));
+    assertThat(thrown.getAttempts(), is(3));
+    assertThat(thrown.getCause(), instanceOf(NumberFormatException.class));
+    assertThat(thrown.getMessage(), is("Limit exceeded after 3 attempts to perform action "
+      + thrown.getAction() + ", 1 of 3 elements failed"));
+    assertThat(callsOf("bad1"), is(3));
+  }
+
+  @Test
+  void shouldNotRetryElementsThatThrowNotIgnoredExceptions() {
+    Trier<Object> trier = new CounterBasedTrier<Object>(5, 1L).ignoring(IllegalStateException.class);
+    BatchLimitExceededException thrown = assertThrows(BatchAbortedException.class,
+      () -> trier.tryToAll(Arrays.asList("a", "bad1"), failingTimes(5)));
+    assertThat(thrown.getFailedElements(), contains("bad1"));
+    assertThat(thrown.getCause(), instanceOf(NumberFormatException.class));
+    assertThat(thrown.getAttempts(), is(1));
+    assertThat(thrown.getMessage(), startsWith("Aborted after 1 attempts"));
+    assertThat(thrown.getMessage(), endsWith("1 of 2 elements failed"));
+    assertThat(callsOf("bad1"), is(1));
+  }
+
+  @Test
+  void shouldReportTheAbortingExceptionRatherThanEarlierIgnoredOne() {
+    Trier<Object> trier = new TimeBasedTrier<Object>(1000L, 1L).ignoring(IllegalStateException.class);
+    Function<String, String> f = s -> {
+      int call = calls.computeIfAbsent(s, k -> new AtomicInteger()).incrementAndGet();
+      if (s.equals("flaky") && call == 1) {
+        throw new IllegalStateException(s);
+      }
+      if (s.equals("bad") && call == 2) {
+        throw new NumberFormatException(s);
+      }
+      return s.equals("bad") && call == 1 ? null : s;
+    };
+    BatchLimitExceededException thrown = assertThrows(BatchAbortedException.class,
+      () -> trier.tryToAll(Arrays.asList("a", "flaky", "bad"), f));
+    assertThat(thrown.getCause(), instanceOf(NumberFormatException.class));
+    assertThat(thrown.getFailedElements(), contains("bad"));
+    assertThat(thrown.getResults(), contains("a", "flaky", null));
+    assertThat(thrown.getMessage(), startsWith("Aborted after 2 attempts"));
+  }
+
+  @Test
+  void shouldRetryElementsWithIgnoredResults() throws Exception {
+    AtomicInteger counter = new AtomicInteger();
+    Trier<Object> trier = new CounterBasedTrier<>(5, 1L);
+    List<Object> results = trier.tryToAll(Arrays.asList(1, 2), x -> x == 2 && counter.incrementAndGet() < 3 ? 0 : x);
+    assertThat(results, contains(1, 2));
+    assertThat(counter.get(), is(3));
+  }
+
+}
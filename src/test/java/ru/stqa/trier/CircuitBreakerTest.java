@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CircuitBreakerTest {
+
+  private TestingClock clock;
+  private CircuitBreaker breaker;
+
+  @BeforeEach
+  void init() {
+    clock = new TestingClock();
+    breaker = new CircuitBreaker(4, 0.5, 100, 10, 2, clock);
+  }
+
+  @Test
+  void shouldStayClosedUntilWindowIsFull() {
+    breaker.onFailure();
+    breaker.onFailure();
+    breaker.onFailure();
+    assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+    breaker.onFailure();
+    assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+  }
+
+  @Test
+  void shouldStayClosedBelowFailureRate() {
+    breaker.onFailure();
+    breaker.onSuccess();
+    breaker.onSuccess();
+    breaker.onSuccess();
+    breaker.onFailure();
+    assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+    breaker.onFailure();
+    assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+  }
+
+  @Test
+  void shouldRejectAttemptsWhileOpen() {
+    open();
+    assertThat(breaker.tryAcquirePermission(), is(false));
+    clock.sleep(99);
+    assertThat(breaker.tryAcquirePermission(), is(false));
+    assertThat(breaker.getRejectedCount(), is(2L));
+  }
+
+  @Test
+  void shouldRateLimitProbesWhenHalfOpen() {
+    open();
+    clock.sleep(100);
+    assertThat(breaker.tryAcquirePermission(), is(true));
+    assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+    assertThat(breaker.tryAcquirePermission(), is(false));
+    clock.sleep(10);
+    assertThat(breaker.tryAcquirePermission(), is(true));
+  }
+
+  @Test
+  void shouldCloseAfterSuccessfulProbes() {
+    open();
+    clock.sleep(100);
+    breaker.tryAcquirePermission();
+    breaker.onSuccess();
+    assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+    breaker.onSuccess();
+    assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+    breaker.onFailure();
+    assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+  }
+
+  @Test
+  void shouldReopenAfterFailedProbe() {
+    open();
+    clock.sleep(100);
+    breaker.tryAcquirePermission();
+    breaker.onFailure();
+    assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+    assertThat(breaker.tryAcquirePermission(), is(false));
+  }
+
+  @Test
+  void shouldLetOneProbeThroughWhenThreadsRaceToHalfOpen() throws Exception {
+    int threads = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (int round = 0; round < 100; round++) {
+        open();
+        clock.sleep(100);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<Future<Boolean>> permissions = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+          permissions.add(executor.submit(() -> {
+            start.await();
+            return breaker.tryAcquirePermission();
+          }));
+        }
+        int granted = 0;
+        for (Future<Boolean> permission : permissions) {
+          granted += permission.get() ? 1 : 0;
+        }
+        assertThat(granted, is(1));
+        breaker.onFailure();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldRejectInvalidArguments() {
+    assertThrows(NullPointerException.class, () -> new CircuitBreaker(4, 0.5, 100, 10, 2, null));
+    assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker(4, 0.5, -1, 10, 2, clock));
+    assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker(4, 0.5, 100, -1, 2, clock));
+    assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker(0, 0.5, 100, 10, 2, clock));
+    assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker(4, 0, 100, 10, 2, clock));
+    assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker(4, 0.5, 100, 10, 0, clock));
+  }
+
+  @Test
+  void shouldFailImmediatelyWhenOpen() {
+    AtomicInteger calls = new AtomicInteger();
+    Runnable r = () -> {
+      calls.incrementAndGet();
+      throw new NumberFormatException();
+    };
+    Trier<Object> trier = new CounterBasedTrier<>(10, clock, clock, Backoff.fixed(1)).guardedBy(breaker);
+    LimitExceededException thrown = assertThrows(LimitExceededException.class, () -> trier.tryTo(r));
+    assertThat(calls.get(), is(4));
+    assertThat(thrown.getMessage(), containsString("Circuit breaker is open"));
+    assertThat(thrown.getCause(), instanceOf(NumberFormatException.class));
+
+    thrown = assertThrows(LimitExceededException.class, () -> trier.tryTo(r));
+    assertThat(calls.get(), is(4));
+    assertThat(thrown.getAttempts(), is(0));
+  }
+
+  private void open() {
+    for (int i = 0; i < 4; i++) {
+      breaker.onFailure();
+    }
+  }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Shares one preconfigured trier between many threads.
+ */
+class ConcurrentTrierTest {
+
+  private static final int THREADS = 8;
+  private static final int CALLS = 2000;
+
+  private void runConcurrently(Runnable task) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          for (int j = 0; j < CALLS; j++) {
+            task.run();
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void sharedTrierShouldKeepCallsIndependent() throws Exception {
+    Trier<Object> trier = new CounterBasedTrier<>(3, 0L)
+      .ignoring(NumberFormatException.class)
+      .until(res -> res.equals("OK"));
+    AtomicInteger limitExceeded = new AtomicInteger();
+    AtomicReference<Throwable> unexpected = new AtomicReference<>();
+    runConcurrently(() -> {
+      // each call fails twice and then succeeds on its last allowed attempt
+      AtomicInteger attempts = new AtomicInteger();
+      try {
+        Object res = trier.tryTo(() -> {
+          if (attempts.incrementAndGet() < 3) {
+            throw new NumberFormatException();
+          }
+          return "OK";
+        });
+        if (! res.equals("OK") || attempts.get() != 3) {
+          unexpected.set(new AssertionError("Unexpected result " + res + " after " + attempts.get()));
+        }
+      } catch (LimitExceededException e) {
+        limitExceeded.incrementAndGet();
+      } catch (Throwable t) {
+        unexpected.set(t);
+      }
+    });
+    assertThat(unexpected.get(), is((Throwable) null));
+    assertThat(limitExceeded.get(), is(0));
+  }
+
+  @Test
+  void configuringSharedTrierShouldNotAffectOtherThreads() throws Exception {
+    Trier<Object> shared = new CounterBasedTrier<>(2, 0L).ignoring(NumberFormatException.class);
+    AtomicReference<Throwable> unexpected = new AtomicReference<>();
+    AtomicInteger counter = new AtomicInteger();
+    runConcurrently(() -> {
+      Supplier<Object> failing = () -> { throw new NumberFormatException(); };
+      if (counter.incrementAndGet() % 2 == 0) {
+        // derived triers are built and dropped while other threads use the shared one
+        Trier<Object> derived = shared.abortingOn(NumberFormatException.class).until(res -> false);
+        try {
+          derived.tryTo(failing);
+          unexpected.set(new AssertionError("Derived trier should abort"));
+        } catch (NumberFormatException expected) {
+        } catch (Throwable t) {
+          unexpected.set(t);
+        }
+      } else {
+        try {
+          shared.tryTo(failing);
+          unexpected.set(new AssertionError("Shared trier should give up"));
+        } catch (LimitExceededException expected) {
+        } catch (Throwable t) {
+          unexpected.set(t);
+        }
+      }
+    });
+    assertThat(unexpected.get(), is((Throwable) null));
+  }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExceptionClassifierTest {
+
+  @Test
+  void shouldRetryAllExceptionsIfThereAreNoLists() {
+    ExceptionClassifier classifier = new ExceptionClassifier(null, null);
+    assertThat(classifier.isRetryable(new IOException()), is(true));
+    assertThat(classifier.isRetryable(new Error()), is(true));
+  }
+
+  @Test
+  void shouldRetryOnlyListedExceptionsAndTheirSubclasses() {
+    ExceptionClassifier classifier = new ExceptionClassifier(classes(IOException.class), null);
+    assertThat(classifier.isRetryable(new IOException()), is(true));
+    assertThat(classifier.isRetryable(new FileNotFoundException()), is(true));
+    assertThat(classifier.isRetryable(new Exception()), is(false));
+    assertThat(classifier.isRetryable(new UncheckedIOException(new IOException())), is(false));
+  }
+
+  @Test
+  void shouldRetryAllButAbortingExceptionsIfThereIsNoRetryList() {
+    ExceptionClassifier classifier = new ExceptionClassifier(null, classes(IOException.class));
+    assertThat(classifier.isRetryable(new FileNotFoundException()), is(false));
+    assertThat(classifier.isRetryable(new IllegalStateException()), is(true));
+  }
+
+  @Test
+  void shouldPreferTheMostSpecificClass() {
+    ExceptionClassifier abortMoreSpecific = new ExceptionClassifier(
+      classes(IOException.class), classes(FileNotFoundException.class));
+    assertThat(abortMoreSpecific.isRetryable(new IOException()), is(true));
+    assertThat(abortMoreSpecific.isRetryable(new FileNotFoundException()), is(false));
+
+    ExceptionClassifier retryMoreSpecific = new ExceptionClassifier(
+      classes(FileNotFoundException.class), classes(Exception.class));
+    assertThat(retryMoreSpecific.isRetryable(new FileNotFoundException()), is(true));
+    assertThat(retryMoreSpecific.isRetryable(new IOException()), is(false));
+  }
+
+  @Test
+  void shouldAbortIfClassIsInBothLists() {
+    ExceptionClassifier classifier = new ExceptionClassifier(classes(IOException.class), classes(IOException.class));
+    assertThat(classifier.isRetryable(new IOException()), is(false));
+  }
+
+  @Test
+  void cachedVerdictsShouldMatchComputedOnes() {
+    ExceptionClassifier classifier = new ExceptionClassifier(classes(IOException.class), classes(FileNotFoundException.class));
+    for (int i = 0; i < 20; i++) {
+      assertThat(classifier.isRetryable(new IOException()), is(true));
+      assertThat(classifier.isRetryable(new FileNotFoundException()), is(false));
+      assertThat(classifier.isRetryable(new IllegalStateException()), is(false));
+    }
+  }
+
+  @Test
+  void copiesOfTrierShouldKeepTheClassifier() {
+    TestingClock clock = new TestingClock();
+    Trier<Object> trier = new CounterBasedTrier<>(3, clock, clock, Backoff.fixed(1))
+      .ignoring(IllegalArgumentException.class).abortingOn(NumberFormatException.class)
+      .reportingTo(new TrierListener() {}).withoutStackTrace();
+    Runnable ignored = () -> { throw new IllegalArgumentException(); };
+    assertThrows(LimitExceededException.class, () -> trier.tryTo(ignored));
+    Runnable aborting = () -> { throw new NumberFormatException(); };
+    assertThrows(NumberFormatException.class, () -> trier.tryTo(aborting));
+  }
+
+  @Test
+  void shouldAbortTrierOnAbortingException() {
+    TestingClock clock = new TestingClock();
+    Trier<Object> trier = new CounterBasedTrier<>(5, clock, clock, Backoff.fixed(1))
+      .ignoring(IllegalArgumentException.class).abortingOn(NumberFormatException.class);
+    Runnable r = () -> { throw new NumberFormatException(); };
+    assertThrows(NumberFormatException.class, () -> trier.tryTo(r));
+    assertThat(clock.now(), is(0L));
+  }
+
+  @SafeVarargs
+  private static Class<? extends Throwable>[] classes(Class<? extends Throwable>... classes) {
+    return classes;
+  }
+
+}
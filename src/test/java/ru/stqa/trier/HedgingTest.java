@@ -0,0 +1,217 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HedgingTest {
+
+  private ExecutorService executor;
+  private TestingClock clock;
+
+  @BeforeEach
+  void init() {
+    executor = Executors.newCachedThreadPool();
+    clock = new TestingClock();
+  }
+
+  @AfterEach
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void shouldReturnResultOfHedgeIfFirstAttemptHangs() throws Exception {
+    CountDownLatch interrupted = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+    Supplier<Object> s = () -> {
+      if (calls.incrementAndGet() == 1) {
+        try {
+          Thread.sleep(10000);
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+        }
+        return "SLOW";
+      }
+      return "FAST";
+    };
+    Trier<Object> trier = new CounterBasedTrier<>(1, clock, clock, Backoff.fixed(1))
+      .hedging(new Hedging(10, 1, 10, executor));
+    assertThat(trier.tryTo(s), is("FAST"));
+    assertThat(calls.get(), is(2));
+    assertThat(interrupted.await(1, TimeUnit.SECONDS), is(true));
+  }
+
+  @Test
+  void shouldWaitForOtherCopiesIfOneIsRejected() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch hedgeStarted = new CountDownLatch(1);
+    Supplier<Object> s = () -> {
+      if (calls.incrementAndGet() == 1) {
+        await(hedgeStarted);
+        return "OK";
+      }
+      hedgeStarted.countDown();
+      return "";
+    };
+    Trier<Object> trier = new CounterBasedTrier<>(1, clock, clock, Backoff.fixed(1))
+      .hedging(new Hedging(10, 1, 10, executor));
+    assertThat(trier.tryTo(s), is("OK"));
+  }
+
+  @Test
+  void shouldNotHedgeAboveInFlightLimit() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    Supplier<Object> s = () -> {
+      calls.incrementAndGet();
+      sleep(50);
+      return "OK";
+    };
+    Trier<Object> trier = new CounterBasedTrier<>(1, clock, clock, Backoff.fixed(1))
+      .hedging(new Hedging(1, 3, 0, executor));
+    assertThat(trier.tryTo(s), is("OK"));
+    assertThat(calls.get(), is(1));
+  }
+
+  @Test
+  void shouldReportFailureIfAllCopiesFail() {
+    Supplier<Object> s = () -> {
+      sleep(20);
+      throw new NumberFormatException();
+    };
+    Trier<Object> trier = new CounterBasedTrier<>(2, clock, clock, Backoff.fixed(1))
+      .ignoring(NumberFormatException.class)
+      .hedging(new Hedging(5, 1, 10, executor));
+    LimitExceededException thrown = assertThrows(LimitExceededException.class, () -> trier.tryTo(s));
+    assertThat(thrown.getCause(), instanceOf(NumberFormatException.class));
+  }
+
+  @Test
+  void shouldLearnDelayFromObservedDurations() {
+    Hedging hedging = Hedging.atPercentile(50, 1000, 1, 10, executor);
+    for (int i = 0; i < 64; i++) {
+      hedging.learn(TimeUnit.MILLISECONDS.toNanos(i % 2 == 0 ? 5 : 20));
+    }
+    // too few samples yet
+    assertThat(hedging.getDelayNanos(), is(TimeUnit.MILLISECONDS.toNanos(1000)));
+    for (int i = 0; i < 64; i++) {
+      hedging.learn(TimeUnit.MILLISECONDS.toNanos(i % 2 == 0 ? 5 : 20));
+    }
+    // the upper bound of the bucket with the median, within 12.5%
+    long delay = hedging.getDelayNanos();
+    assertThat(delay >= TimeUnit.MILLISECONDS.toNanos(5), is(true));
+    assertThat(delay < TimeUnit.MILLISECONDS.toNanos(6), is(true));
+  }
+
+  @Test
+  void shouldLearnDurationsOfAttempts() throws Exception {
+    Hedging hedging = Hedging.atPercentile(50, 1000, 1, 10, executor);
+    Trier<Object> trier = new CounterBasedTrier<>(1, clock, clock, Backoff.fixed(1)).hedging(hedging);
+    for (int i = 0; i < 128; i++) {
+      trier.tryTo(() -> {
+        sleep(5);
+        return "OK";
+      });
+    }
+    long delay = hedging.getDelayNanos();
+    assertThat(delay >= TimeUnit.MILLISECONDS.toNanos(5), is(true));
+    // learned, the initial delay is not used anymore
+    assertThat(delay < TimeUnit.MILLISECONDS.toNanos(1000), is(true));
+  }
+
+  @Test
+  void shouldLearnDurationsOfCancelledCopies() throws Exception {
+    Hedging hedging = Hedging.atPercentile(90, 5, 1, 10, executor);
+    Trier<Object> trier = new CounterBasedTrier<>(1, clock, clock, Backoff.fixed(1)).hedging(hedging);
+    AtomicInteger calls = new AtomicInteger();
+    for (int i = 0; i < 128; i++) {
+      trier.tryTo(() -> {
+        if (calls.incrementAndGet() % 2 == 1) {
+          sleep(10000);
+        }
+        return "OK";
+      });
+    }
+    // the fast hedges win every time, but the slow copies ran at least 5 ms before they were cancelled
+    assertThat(hedging.getDelayNanos() >= TimeUnit.MILLISECONDS.toNanos(4), is(true));
+  }
+
+  @Test
+  void shouldForgetOldDurations() {
+    Hedging hedging = Hedging.atPercentile(90, 5, 1, 10, executor);
+    for (int i = 0; i < 2000; i++) {
+      hedging.learn(TimeUnit.MILLISECONDS.toNanos(50));
+    }
+    for (int i = 0; i < 2000; i++) {
+      hedging.learn(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    assertThat(hedging.getDelayNanos() < TimeUnit.MILLISECONDS.toNanos(5), is(true));
+  }
+
+  @Test
+  void shouldPropagateInterruptWithoutRetrying() {
+    AtomicInteger calls = new AtomicInteger();
+    Supplier<Object> s = () -> {
+      calls.incrementAndGet();
+      sleep(10000);
+      return "OK";
+    };
+    Trier<Object> trier = new CounterBasedTrier<>(3, clock, clock, Backoff.fixed(1))
+      .hedging(new Hedging(10, 1, 10, executor));
+    Thread.currentThread().interrupt();
+    assertThrows(InterruptedException.class, () -> trier.tryTo(s));
+    assertThat(Thread.interrupted(), is(true));
+    assertThat(calls.get() <= 1, is(true));
+  }
+
+  @Test
+  void shouldRejectNegativeNumberOfHedges() {
+    assertThrows(IllegalArgumentException.class, () -> new Hedging(10, -1, 10, executor));
+    assertThrows(IllegalArgumentException.class, () -> Hedging.atPercentile(50, 10, 1, -1, executor));
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
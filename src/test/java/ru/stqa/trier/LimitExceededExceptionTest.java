@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LimitExceededExceptionTest {
+
+  private final TestingClock clock = new TestingClock();
+
+  @Test
+  void shouldReportAttemptsOfCounterBasedTrier() {
+    Trier<Object> trier = new CounterBasedTrier<>(3, clock, clock, Backoff.fixed(2));
+    Supplier<Object> s = () -> null;
+    LimitExceededException thrown = assertThrows(LimitExceededException.class, () -> trier.tryTo(s));
+    assertThat(thrown.getAttempts(), is(3));
+    assertThat(thrown.getElapsed(), is(4L));
+    assertThat(thrown.getLimit(), is(3L));
+    assertThat(thrown.getMessage(), is("Limit exceeded after 3 attempts to perform action " + s));
+  }
+
+  @Test
+  void shouldReportDurationOfTimeBasedTrier() {
+    Trier<Object> trier = new TimeBasedTrier<>(4, clock, clock, 1);
+    Supplier<Object> s = () -> null;
+    LimitExceededException thrown = assertThrows(LimitExceededException.class, () -> trier.tryTo(s));
+    assertThat(thrown.getAttempts(), is(5));
+    assertThat(thrown.getElapsed(), is(4L));
+    assertThat(thrown.getMessage(), is("Timed out after 4 milliseconds trying to perform action " + s));
+  }
+
+  @Test
+  void shouldNotFormatMessageUntilAsked() {
+    AtomicInteger calls = new AtomicInteger();
+    Object action = new Object() {
+      @Override
+      public String toString() {
+        calls.incrementAndGet();
+        return "ACTION";
+      }
+    };
+    LimitExceededException e = new LimitExceededException("%4$s", 1, 0, 1, action, null, true);
+    assertThat(calls.get(), is(0));
+    assertThat(e.getMessage(), is("ACTION"));
+    assertThat(calls.get(), is(1));
+  }
+
+  @Test
+  void shouldKeepCauseWithoutStackTrace() {
+    Trier<Object> trier = new CounterBasedTrier<>(3, clock, clock, Backoff.fixed(1)).withoutStackTrace();
+    Runnable r = () -> { throw new NumberFormatException(); };
+    LimitExceededException thrown = assertThrows(LimitExceededException.class, () -> trier.tryTo(r));
+    assertThat(thrown.getStackTrace().length, is(0));
+    assertThat(thrown.getCause(), instanceOf(NumberFormatException.class));
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class ManagedBlockingTest {
+
+  @Test
+  void sleepingTriersShouldNotStarveTheForkJoinPool() throws Exception {
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      CountDownLatch attempted = new CountDownLatch(2);
+      List<ForkJoinTask<?>> triers = new ArrayList<>();
+      for (int i = 0; i < 2; i++) {
+        triers.add(pool.submit(() -> {
+          try {
+            new CounterBasedTrier<>(2, TimeUnit.MINUTES.toMillis(1)).tryTo(() -> {
+              attempted.countDown();
+              return null;
+            });
+          } catch (LimitExceededException | InterruptedException expected) {
+          }
+        }));
+      }
+      assertThat(attempted.await(5, TimeUnit.SECONDS), is(true));
+      // both workers are busy with the triers for a minute, the task can only run if the pool
+      // compensates for the sleeping ones
+      assertThat(pool.submit(() -> "OK").get(10, TimeUnit.SECONDS), is("OK"));
+      for (ForkJoinTask<?> trier : triers) {
+        assertThat(trier.isDone(), is(false));
+      }
+    } finally {
+      pool.shutdownNow();
+      pool.awaitTermination(5, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  void shouldSleepOnOrdinaryThreads() throws Exception {
+    long started = System.nanoTime();
+    ManagedBlocking.sleep(20);
+    assertThat(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(20), is(true));
+  }
+
+  @Test
+  void shouldTakeFromQueueOnWorkerThreads() throws Exception {
+    LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    CountDownLatch polled = new CountDownLatch(1);
+    ForkJoinTask<String> task = ForkJoinPool.commonPool().submit(() -> {
+      String first = ManagedBlocking.poll(queue, TimeUnit.MILLISECONDS.toNanos(10));
+      polled.countDown();
+      return first + ManagedBlocking.take(queue);
+    });
+    assertThat(polled.await(5, TimeUnit.SECONDS), is(true));
+    queue.add("OK");
+    assertThat(task.get(5, TimeUnit.SECONDS), is("nullOK"));
+  }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PollingServiceTest {
+
+  private final PollingService polling = new PollingService(2);
+
+  @AfterEach
+  void close() {
+    polling.close();
+  }
+
+  @Test
+  void shouldDriveManyWaitsWithFewThreads() throws Exception {
+    List<CompletableFuture<Integer>> futures = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      AtomicInteger probes = new AtomicInteger();
+      Trier<Integer> trier = new TimeBasedTrier<Integer>(5000L, 1L).until(res -> res >= 3);
+      futures.add(polling.poll(trier, probes::incrementAndGet));
+    }
+    for (CompletableFuture<Integer> future : futures) {
+      assertThat(future.get(5, TimeUnit.SECONDS), is(3));
+    }
+    assertThat(polling.getPendingCount(), is(0));
+  }
+
+  @Test
+  void shouldBlockTheCallerUntilTheResultIsAccepted() throws Exception {
+    AtomicInteger probes = new AtomicInteger();
+    Trier<Integer> trier = new CounterBasedTrier<Integer>(5, 1L).until(res -> res == 2);
+    assertThat(polling.await(trier, probes::incrementAndGet), is(2));
+  }
+
+  @Test
+  void shouldThrowLimitExceededExceptionWhenTheWaitIsOver() {
+    Trier<Object> trier = new CounterBasedTrier<>(3, 1L);
+    assertThrows(LimitExceededException.class, () -> polling.await(trier, () -> false));
+  }
+
+  @Test
+  void shouldRunProbesWithTheEarliestDeadlineFirst() throws Exception {
+    PollingService single = new PollingService(1);
+    try {
+      List<Integer> order = new CopyOnWriteArrayList<>();
+      AtomicInteger lateProbes = new AtomicInteger();
+      AtomicInteger earlyProbes = new AtomicInteger();
+      CompletableFuture<?> late = single.poll(new CounterBasedTrier<>(2, 60L),
+        () -> order.add(3) && lateProbes.incrementAndGet() == 2);
+      CompletableFuture<?> early = single.poll(new CounterBasedTrier<>(2, 20L),
+        () -> order.add(2) && earlyProbes.incrementAndGet() == 2);
+      late.get(1, TimeUnit.SECONDS);
+      early.get(1, TimeUnit.SECONDS);
+      assertThat(order, contains(3, 2, 2, 3));
+    } finally {
+      single.close();
+    }
+  }
+
+  @Test
+  void shouldCancelPendingWaitsOnClose() {
+    CompletableFuture<Object> future = polling.poll(new CounterBasedTrier<>(2, 10000L), () -> false);
+    polling.close();
+    assertThrows(CancellationException.class, () -> future.get(1, TimeUnit.SECONDS));
+  }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PrimitiveTrierTest {
+
+  private final TestingClock clock = new TestingClock();
+  private final Trier<Object> counterBased = new CounterBasedTrier<>(5, clock, clock, Backoff.fixed(1));
+  private final Trier<Object> timeBased = new TimeBasedTrier<>(4, clock, clock, Backoff.fixed(1));
+  private final AtomicInteger counter = new AtomicInteger();
+
+  @Test
+  void shouldWaitForNonZeroInt() throws Exception {
+    assertThat(counterBased.tryToInt(() -> counter.getAndIncrement()), is(1));
+    assertThat(counter.get(), is(2));
+  }
+
+  @Test
+  void shouldWaitForIntMatchingThePredicate() throws Exception {
+    assertThat(timeBased.tryToInt(counter::incrementAndGet, res -> res == 3), is(3));
+    assertThat(clock.now(), is(2L));
+  }
+
+  @Test
+  void shouldWaitForLongMatchingThePredicate() throws Exception {
+    assertThat(counterBased.tryToLong(() -> Long.MAX_VALUE - counter.incrementAndGet(), res -> res < Long.MAX_VALUE - 2),
+      is(Long.MAX_VALUE - 3));
+  }
+
+  @Test
+  void shouldPassDoublesUnchanged() throws Exception {
+    assertThat(timeBased.tryToDouble(() -> counter.incrementAndGet() < 2 ? 0.0 : -0.25), is(-0.25));
+    assertThat(counterBased.tryToDouble(() -> Double.NaN, Double::isNaN), is(Double.NaN));
+  }
+
+  @Test
+  void shouldWaitForTrue() throws Exception {
+    timeBased.tryToBoolean(() -> counter.incrementAndGet() == 4);
+    assertThat(counter.get(), is(4));
+  }
+
+  @Test
+  void shouldFailWithLimitExceededException() {
+    LimitExceededException thrown = assertThrows(LimitExceededException.class, () -> counterBased.tryToBoolean(() -> false));
+    assertThat(thrown.getAttempts(), is(5));
+    assertThrows(LimitExceededException.class, () -> timeBased.tryToLong(() -> 0L));
+  }
+
+  @Test
+  void shouldRethrowNotIgnoredExceptions() {
+    Trier<Object> trier = counterBased.ignoring(NumberFormatException.class);
+    assertThrows(IllegalStateException.class, () -> trier.tryToInt(() -> {
+      if (counter.incrementAndGet() < 2) {
+        throw new NumberFormatException();
+      }
+      throw new IllegalStateException();
+    }));
+    assertThat(counter.get(), is(2));
+  }
+
+  @Test
+  void shouldReportRejectedResultsBoxed() throws Exception {
+    TrierListener listener = new TrierListener() {
+      @Override
+      public void onResultRejected(Object action, int attempt, long duration, Object result) {
+        assertThat(result, is(0.0));
+        counter.incrementAndGet();
+      }
+    };
+    AtomicInteger probes = new AtomicInteger();
+    assertThat(counterBased.reportingTo(listener).tryToDouble(() -> probes.incrementAndGet() < 3 ? 0.0 : 1.0), is(1.0));
+    assertThat(counter.get(), is(2));
+  }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ResultCacheTest {
+
+  private final TestingClock clock = new TestingClock();
+  private final AtomicInteger calls = new AtomicInteger();
+  private final Function<String, Object> upper = s -> {
+    calls.incrementAndGet();
+    return s.toUpperCase();
+  };
+  private final Function<String, Object> failing = s -> {
+    calls.incrementAndGet();
+    return null;
+  };
+
+  private Trier<Object> trier(ResultCache cache) {
+    return new CounterBasedTrier<>(3, clock, clock, Backoff.fixed(1)).caching(cache);
+  }
+
+  @Test
+  void shouldReturnCachedResultUntilItExpires() throws Exception {
+    ResultCache cache = new ResultCache(100, 10, 10, clock);
+    Trier<Object> trier = trier(cache);
+    assertThat(trier.tryTo(upper, "a"), is("A"));
+    assertThat(trier.tryTo(upper, "a"), is("A"));
+    assertThat(calls.get(), is(1));
+    clock.sleep(100);
+    assertThat(trier.tryTo(upper, "a"), is("A"));
+    assertThat(calls.get(), is(2));
+    assertThat(cache.getHitCount(), is(1L));
+    assertThat(cache.getMissCount(), is(2L));
+  }
+
+  @Test
+  void shouldFailFastWhileFailureIsCached() {
+    ResultCache cache = new ResultCache(100, 10, 10, clock);
+    Trier<Object> trier = trier(cache);
+    LimitExceededException first = assertThrows(LimitExceededException.class, () -> trier.tryTo(failing, "a"));
+    assertThat(calls.get(), is(3));
+    LimitExceededException second = assertThrows(LimitExceededException.class, () -> trier.tryTo(failing, "a"));
+    assertThat(second, sameInstance(first));
+    assertThat(calls.get(), is(3));
+    assertThat(cache.getNegativeHitCount(), is(1L));
+    clock.sleep(10);
+    assertThrows(LimitExceededException.class, () -> trier.tryTo(failing, "a"));
+    assertThat(calls.get(), is(6));
+  }
+
+  @Test
+  void shouldNotCacheNotIgnoredExceptions() {
+    ResultCache cache = new ResultCache(100, 10, 10, clock);
+    Trier<Object> trier = trier(cache).ignoring(NumberFormatException.class);
+    Function<String, Object> f = s -> { calls.incrementAndGet(); throw new IllegalStateException(); };
+    assertThrows(IllegalStateException.class, () -> trier.tryTo(f, "a"));
+    assertThrows(IllegalStateException.class, () -> trier.tryTo(f, "a"));
+    assertThat(calls.get(), is(2));
+    assertThat(cache.size(), is(0));
+  }
+
+  @Test
+  void shouldEvictEntriesBeyondTheSize() throws Exception {
+    ResultCache cache = new ResultCache(100, 10, 2, clock);
+    Trier<Object> trier = trier(cache);
+    trier.tryTo(upper, "a");
+    trier.tryTo(upper, "b");
+    trier.tryTo(upper, "c");
+    assertThat(cache.size(), is(2));
+    assertThat(cache.getEvictionCount(), is(1L));
+  }
+
+  @Test
+  void shouldEvictEntriesStoredFirst() throws Exception {
+    ResultCache cache = new ResultCache(100, 10, 2, clock);
+    Trier<Object> trier = trier(cache);
+    trier.tryTo(upper, "a");
+    trier.tryTo(upper, "b");
+    trier.tryTo(upper, "c");
+    trier.tryTo(upper, "b");
+    trier.tryTo(upper, "c");
+    assertThat(calls.get(), is(3));
+    trier.tryTo(upper, "a");
+    assertThat(calls.get(), is(4));
+  }
+
+  @Test
+  void concurrentEvictionShouldNotShrinkTheCacheBelowItsSize() throws Exception {
+    ResultCache cache = new ResultCache(100_000, 10, 100, clock);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        int thread = t;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 10_000; i++) {
+            cache.put(thread + "-" + i, i);
+            // overwrites leave stale entries in the eviction queue
+            cache.put(thread + "-" + i, i);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(cache.size(), greaterThanOrEqualTo(100));
+    cache.put("last", 0);
+    assertThat(cache.size(), is(100));
+  }
+
+  @Test
+  void shouldCacheNullParameter() throws Exception {
+    ResultCache cache = new ResultCache(100, 10, 2, clock);
+    Trier<Object> trier = trier(cache);
+    Function<String, Object> f = s -> calls.incrementAndGet();
+    assertThat(trier.tryTo(f, null), is(1));
+    assertThat(trier.tryTo(f, null), is(1));
+    cache.invalidate(null);
+    assertThat(trier.tryTo(f, null), is(2));
+  }
+
+}
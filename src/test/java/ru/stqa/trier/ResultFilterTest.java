@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class ResultFilterTest {
+
+  private final ResultFilter filter = ResultFilter.DEFAULT;
+
+  @Test
+  void shouldIgnoreFalsyValues() {
+    assertThat(filter.isIgnored(null), is(true));
+    assertThat(filter.isIgnored(false), is(true));
+    assertThat(filter.isIgnored(0), is(true));
+    assertThat(filter.isIgnored(0L), is(true));
+    assertThat(filter.isIgnored(-0.0), is(true));
+    assertThat(filter.isIgnored(BigDecimal.ZERO), is(true));
+    assertThat(filter.isIgnored(""), is(true));
+    assertThat(filter.isIgnored(new StringBuilder()), is(true));
+    assertThat(filter.isIgnored(new ArrayList<>()), is(true));
+    assertThat(filter.isIgnored(Collections.emptyMap()), is(true));
+    assertThat(filter.isIgnored(Optional.empty()), is(true));
+    assertThat(filter.isIgnored(new String[0]), is(true));
+    assertThat(filter.isIgnored(new int[0]), is(true));
+  }
+
+  @Test
+  void shouldAcceptOtherValues() {
+    assertThat(filter.isIgnored(true), is(false));
+    assertThat(filter.isIgnored(1), is(false));
+    assertThat(filter.isIgnored(Double.NaN), is(false));
+    assertThat(filter.isIgnored(new AtomicInteger(1)), is(false));
+    assertThat(filter.isIgnored("OK"), is(false));
+    assertThat(filter.isIgnored(Collections.singletonList(1)), is(false));
+    assertThat(filter.isIgnored(Collections.singletonMap(1, 1)), is(false));
+    assertThat(filter.isIgnored(Optional.of(1)), is(false));
+    assertThat(filter.isIgnored(new Object[1]), is(false));
+    assertThat(filter.isIgnored(new long[1]), is(false));
+    assertThat(filter.isIgnored(new Object()), is(false));
+  }
+
+  @Test
+  void shouldApplyCustomRulesToSubclasses() {
+    ResultFilter custom = filter.with(CharSequence.class, cs -> cs.toString().trim().isEmpty());
+    assertThat(custom.isIgnored("  "), is(true));
+    assertThat(custom.isIgnored(new StringBuilder(" ")), is(true));
+    assertThat(custom.isIgnored(" x "), is(false));
+    assertThat(filter.isIgnored("  "), is(false));
+  }
+
+  @Test
+  void shouldPreferTheRuleAddedLast() {
+    ResultFilter custom = filter.with(Number.class, n -> n.intValue() < 0).with(Integer.class, n -> n > 10);
+    assertThat(custom.isIgnored(-1L), is(true));
+    assertThat(custom.isIgnored(-1), is(false));
+    assertThat(custom.isIgnored(11), is(true));
+  }
+
+  @Test
+  void trierShouldIgnoreResultsByCustomRules() throws Exception {
+    AtomicInteger counter = new AtomicInteger();
+    Trier<Object> trier = new CounterBasedTrier<>(5, 1L).treatingAsEmpty(StringBuilder.class, sb -> sb.length() < 3);
+    Object res = trier.tryTo(() -> new StringBuilder().append(counter.incrementAndGet()).append("..", 0, counter.get() - 1));
+    assertThat(res.toString(), is("3.."));
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RetryBudgetTest {
+
+  private final TestingClock clock = new TestingClock();
+
+  @Test
+  void shouldAllowRetriesUntilEmpty() {
+    RetryBudget budget = new RetryBudget(2, 0.5);
+    assertThat(budget.tryWithdraw(), is(true));
+    assertThat(budget.tryWithdraw(), is(true));
+    assertThat(budget.tryWithdraw(), is(false));
+    assertThat(budget.getWithdrawnCount(), is(2L));
+    assertThat(budget.getExhaustedCount(), is(1L));
+  }
+
+  @Test
+  void shouldRefillOnSuccessUpToCapacity() {
+    RetryBudget budget = new RetryBudget(1, 0.5);
+    budget.tryWithdraw();
+    budget.deposit();
+    assertThat(budget.getAvailableRetries(), is(0L));
+    budget.deposit();
+    assertThat(budget.getAvailableRetries(), is(1L));
+    budget.deposit();
+    assertThat(budget.getAvailableRetries(), is(1L));
+    assertThat(budget.getDepositedCount(), is(3L));
+  }
+
+  @Test
+  void shouldFailFastWhenBudgetIsExhausted() {
+    RetryBudget budget = new RetryBudget(3, 0.1);
+    Supplier<Object> s = () -> null;
+    Trier<Object> first = new CounterBasedTrier<>(10, clock, clock, Backoff.fixed(1)).sharing(budget);
+    Trier<Object> second = new CounterBasedTrier<>(10, clock, clock, Backoff.fixed(1)).sharing(budget);
+
+    LimitExceededException thrown = assertThrows(LimitExceededException.class, () -> first.tryTo(s));
+    assertThat(thrown.getAttempts(), is(4));
+    assertThat(thrown.getMessage(), containsString("Retry budget exhausted"));
+
+    thrown = assertThrows(LimitExceededException.class, () -> second.tryTo(s));
+    assertThat(thrown.getAttempts(), is(1));
+    assertThat(budget.getExhaustedCount(), is(2L));
+  }
+
+  @Test
+  void shouldNotWithdrawWhenTheNextAttemptWouldMissTheDeadline() {
+    RetryBudget budget = new RetryBudget(5, 0);
+    Supplier<Object> s = () -> {
+      clock.sleep(300);
+      return null;
+    };
+    Trier<Object> trier = new TimeBasedTrier<>(500, clock, clock, 100).sharing(budget);
+    LimitExceededException thrown = assertThrows(LimitExceededException.class, () -> trier.tryTo(s));
+    assertThat(thrown.getMessage(), containsString("would not finish before the deadline"));
+    assertThat(budget.getWithdrawnCount(), is(0L));
+    assertThat(budget.getAvailableRetries(), is(5L));
+  }
+
+  @Test
+  void shouldDepositOnSuccess() throws LimitExceededException, InterruptedException {
+    RetryBudget budget = new RetryBudget(1, 1);
+    budget.tryWithdraw();
+    new TimeBasedTrier<>(10, clock, clock, 1).sharing(budget).tryTo(() -> "OK");
+    assertThat(budget.getAvailableRetries(), is(1L));
+  }
+
+  @Test
+  void shouldNotGoBelowZeroUnderContention() throws InterruptedException {
+    RetryBudget budget = new RetryBudget(1000, 0);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    for (int i = 0; i < 8; i++) {
+      executor.submit(() -> {
+        for (int j = 0; j < 1000; j++) {
+          budget.tryWithdraw();
+        }
+      });
+    }
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+    assertThat(budget.getWithdrawnCount(), is(1000L));
+    assertThat(budget.getExhaustedCount(), is(7000L));
+    assertThat(budget.getAvailableRetries(), is(0L));
+  }
+
+}
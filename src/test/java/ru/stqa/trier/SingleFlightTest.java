@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+
+  private static final int THREADS = 20;
+
+  private final AtomicInteger calls = new AtomicInteger();
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private Function<String, Object> blocking(Object result) {
+    return key -> {
+      calls.incrementAndGet();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      return result;
+    };
+  }
+
+  private List<Future<Object>> callConcurrently(ExecutorService executor, Trier<Object> trier,
+                                                Function<String, Object> f) throws InterruptedException {
+    List<Future<Object>> futures = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      futures.add(executor.submit(() -> trier.tryTo(f, "key")));
+    }
+    while (calls.get() == 0) {
+      Thread.sleep(1);
+    }
+    // let the others join the loop in flight
+    Thread.sleep(50);
+    release.countDown();
+    return futures;
+  }
+
+  @Test
+  void concurrentCallsShouldShareOneLoop() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      Trier<Object> trier = new CounterBasedTrier<>(3, 1L).coalescing();
+      for (Future<Object> future : callConcurrently(executor, trier, blocking("OK"))) {
+        assertThat(future.get(5, TimeUnit.SECONDS), is("OK"));
+      }
+      assertThat(calls.get(), is(1));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void concurrentCallsShouldShareTheFailure() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      Trier<Object> trier = new CounterBasedTrier<>(3, 1L).coalescing();
+      Throwable first = null;
+      for (Future<Object> future : callConcurrently(executor, trier, blocking(null))) {
+        Throwable cause = assertThrows(Exception.class, () -> future.get(5, TimeUnit.SECONDS)).getCause();
+        assertThat(cause, instanceOf(LimitExceededException.class));
+        if (first == null) {
+          first = cause;
+        }
+        assertThat(cause, sameInstance(first));
+      }
+      assertThat(calls.get(), is(3));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void sequentialCallsShouldRunTheirOwnLoops() throws Exception {
+    Trier<Object> trier = new CounterBasedTrier<>(3, 1L).coalescing();
+    Function<String, Object> f = key -> calls.incrementAndGet();
+    assertThat(trier.tryTo(f, "key"), is(1));
+    assertThat(trier.tryTo(f, "key"), is(2));
+    assertThat(trier.tryTo(f, null), is(3));
+  }
+
+  @Test
+  void followerShouldNotWaitPastItsDeadline() throws Exception {
+    Trier<Object> trier = new TimeBasedTrier<>(100L, 1L).coalescing();
+    assertFollowerTimesOut(trier, () -> trier.tryTo(blocking("OK"), "key"));
+  }
+
+  @Test
+  void followerShouldNotWaitPastTheDeadlineOfItsScope() throws Exception {
+    Trier<Object> trier = new CounterBasedTrier<>(3, 1L).coalescing();
+    Trier<Object> outer = new ConditionBasedTrier<>(
+      StopCondition.maxAttempts(1).or(StopCondition.maxElapsed(100)), Backoff.fixed(1));
+    assertFollowerTimesOut(trier, () -> outer.tryTo(() -> {
+      try {
+        return trier.tryTo(blocking("OK"), "key");
+      } catch (LimitExceededException e) {
+        throw new IllegalStateException(e);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    }));
+  }
+
+  private void assertFollowerTimesOut(Trier<Object> trier, Executable follow) throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Object> leader = executor.submit(() -> trier.tryTo(blocking("OK"), "key"));
+      while (calls.get() == 0) {
+        Thread.sleep(1);
+      }
+      Throwable thrown = assertThrows(Exception.class, follow);
+      while (! (thrown instanceof LimitExceededException) || thrown.getCause() != null) {
+        thrown = thrown.getCause();
+      }
+      assertThat(thrown.getMessage(), startsWith("Timed out waiting for another call"));
+      release.countDown();
+      assertThat(leader.get(5, TimeUnit.SECONDS), is("OK"));
+      assertThat(calls.get(), is(1));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static SingleFlight.Follower unbounded() {
+    return new SingleFlight.Follower() {
+      @Override
+      public long timeLeftNanos() {
+        return Long.MAX_VALUE;
+      }
+
+      @Override
+      public LimitExceededException timedOut() {
+        throw new AssertionError();
+      }
+    };
+  }
+
+  @Test
+  void followerShouldRunTheLoopIfTheLeaderIsInterrupted() throws Exception {
+    SingleFlight singleFlight = new SingleFlight();
+    CountDownLatch leading = new CountDownLatch(1);
+    Thread leader = new Thread(() -> {
+      try {
+        singleFlight.join("key", () -> {
+          leading.countDown();
+          Thread.sleep(10000);
+          return "LEADER";
+        }, unbounded());
+      } catch (Exception expected) {
+      }
+    });
+    leader.start();
+    leading.await();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Object> follower = executor.submit(() -> singleFlight.join("key", () -> "FOLLOWER", unbounded()));
+      Thread.sleep(50);
+      leader.interrupt();
+      assertThat(follower.get(5, TimeUnit.SECONDS), is("FOLLOWER"));
+      assertThat(singleFlight.size(), is(0));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SpinningSleeperTest {
+
+  private final SpinningSleeper sleeper = new SpinningSleeper();
+
+  private long measure(long nanos) throws InterruptedException {
+    long started = System.nanoTime();
+    sleeper.sleepNanos(nanos);
+    return System.nanoTime() - started;
+  }
+
+  @Test
+  void shouldSleepAtLeastTheDuration() throws Exception {
+    assertThat(measure(50_000), greaterThanOrEqualTo(50_000L));
+    assertThat(measure(TimeUnit.MILLISECONDS.toNanos(2)), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(2)));
+  }
+
+  @Test
+  void shortSleepsShouldNotPark() throws Exception {
+    // a park would consume the permit, and the park below would wait for the whole minute
+    LockSupport.unpark(Thread.currentThread());
+    sleeper.sleepNanos(5_000);
+    long started = System.nanoTime();
+    LockSupport.parkNanos(TimeUnit.MINUTES.toNanos(1));
+    assertThat(System.nanoTime() - started, lessThan(TimeUnit.SECONDS.toNanos(30)));
+  }
+
+  @Test
+  void shouldBeInterruptible() {
+    Thread.currentThread().interrupt();
+    assertThrows(InterruptedException.class, () -> sleeper.sleepNanos(TimeUnit.SECONDS.toNanos(60)));
+  }
+
+  @Test
+  void defaultSleeperShouldRoundUpToMilliseconds() throws Exception {
+    TestingClock clock = new TestingClock();
+    clock.sleepNanos(1);
+    assertThat(clock.now(), is(1L));
+    clock.sleepNanos(2_000_000);
+    assertThat(clock.now(), is(3L));
+  }
+
+  @Test
+  void trierShouldPollWithSubMillisecondIntervals() throws Exception {
+    List<Long> sleeps = new ArrayList<>();
+    Sleeper recording = new SpinningSleeper() {
+      @Override
+      public void sleepNanos(long duration) throws InterruptedException {
+        sleeps.add(duration);
+        super.sleepNanos(duration);
+      }
+    };
+    Trier<Object> trier = new CounterBasedTrier<>(100, recording, Backoff.fixed(Duration.ofNanos(20_000)));
+    AtomicInteger polls = new AtomicInteger();
+    long started = System.nanoTime();
+    trier.tryToBoolean(() -> polls.incrementAndGet() == 50);
+    assertThat(System.nanoTime() - started, greaterThanOrEqualTo(49 * 20_000L));
+    // not rounded up to milliseconds on the way to the sleeper
+    assertThat(sleeps, is(Collections.nCopies(49, 20_000L)));
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static ru.stqa.trier.StopCondition.maxAttempts;
+import static ru.stqa.trier.StopCondition.maxElapsed;
+import static ru.stqa.trier.StopCondition.maxTotalSleep;
+
+class StopConditionTest {
+
+  private final TestingClock clock = new TestingClock();
+  private final Supplier<Object> failing = () -> null;
+
+  private LimitExceededException giveUp(StopCondition stop, Backoff backoff) {
+    Trier<Object> trier = new ConditionBasedTrier<>(stop, clock, clock, backoff);
+    return assertThrows(LimitExceededException.class, () -> trier.tryTo(failing));
+  }
+
+  @Test
+  void shouldStopByAttemptsWhenTheyRunOutFirst() {
+    LimitExceededException thrown = giveUp(maxAttempts(3).or(maxElapsed(100)), Backoff.fixed(10));
+    assertThat(thrown.getAttempts(), is(3));
+    assertThat(thrown.getLimit(), is(3L));
+    assertThat(thrown.getMessage(), startsWith("Limit exceeded after 3 attempts"));
+    assertThat(clock.now(), is(20L));
+  }
+
+  @Test
+  void shouldStopByTimeWhenItRunsOutFirst() {
+    LimitExceededException thrown = giveUp(maxAttempts(10).or(maxElapsed(25)), Backoff.fixed(10));
+    // attempts at 0, 10, 20 and the last one right at the deadline
+    assertThat(thrown.getAttempts(), is(4));
+    assertThat(thrown.getLimit(), is(25L));
+    assertThat(thrown.getMessage(), startsWith("Timed out after 25 milliseconds"));
+    assertThat(clock.now(), is(25L));
+  }
+
+  @Test
+  void shouldNotCountTimeOfAttemptsAsSleep() throws Exception {
+    Trier<Object> trier = new ConditionBasedTrier<>(maxTotalSleep(30), clock, clock, Backoff.fixed(20));
+    assertThrows(LimitExceededException.class, () -> trier.tryTo(() -> {
+      clock.sleep(100);
+      return null;
+    }));
+    // two sleeps: 20 and the rest of the budget, 10
+    assertThat(clock.now(), is(3 * 100L + 30L));
+  }
+
+  @Test
+  void shouldAcceptCustomConditions() {
+    LimitExceededException thrown = giveUp((attempts, elapsed, totalSleep) -> elapsed > 15, Backoff.fixed(10));
+    assertThat(thrown.getAttempts(), is(3));
+    assertThat(thrown.getMessage(), startsWith("Stop condition reached after 3 attempts"));
+  }
+
+  @Test
+  void presetsShouldBeConditionBasedTriers() {
+    LimitExceededException counter = assertThrows(LimitExceededException.class,
+      () -> new CounterBasedTrier<>(2, clock, clock, Backoff.fixed(1)).tryTo(failing));
+    assertThat(counter.getMessage(), startsWith("Limit exceeded after 2 attempts"));
+    LimitExceededException time = assertThrows(LimitExceededException.class,
+      () -> new TimeBasedTrier<>(5, clock, clock, Backoff.fixed(1)).tryTo(failing));
+    assertThat(time.getMessage(), startsWith("Timed out after 5 milliseconds"));
+  }
+
+  @Test
+  void shouldMakeNoAttemptsIfNoneAreAllowed() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    Supplier<Object> s = () -> {
+      calls.incrementAndGet();
+      return "OK";
+    };
+    LimitExceededException thrown = assertThrows(LimitExceededException.class,
+      () -> new CounterBasedTrier<>(0, clock, clock, Backoff.fixed(1)).tryTo(s));
+    assertThat(thrown.getAttempts(), is(0));
+    assertThat(thrown.getMessage(), startsWith("Limit exceeded after 0 attempts"));
+    assertThrows(LimitExceededException.class, () -> CounterBasedTrier.times(-1).tryTo(s));
+    assertThrows(LimitExceededException.class,
+      () -> new ConditionBasedTrier<>(maxElapsed(100).or(maxAttempts(0)), clock, clock, Backoff.fixed(1)).tryToInt(() -> 1));
+    ExecutionException async = assertThrows(ExecutionException.class,
+      () -> CounterBasedTrier.times(0).tryToAsync(s).get(10, TimeUnit.SECONDS));
+    assertThat(async.getCause(), instanceOf(LimitExceededException.class));
+    assertThrows(BatchLimitExceededException.class,
+      () -> CounterBasedTrier.times(0).tryToAll(Arrays.asList(1, 2), x -> s.get()));
+    assertThat(calls.get(), is(0));
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TimeBasedTrierTest {
+
+  private final TestingClock clock = new TestingClock();
+
+  @Test
+  void shouldNotSleepPastTheDeadline() {
+    @SuppressWarnings("unchecked")
+    Supplier<Object> s = Mockito.mock(Supplier.class);
+    Trier<Object> trier = new TimeBasedTrier<>(10L, clock, clock, 4L);
+    assertThrows(LimitExceededException.class, () -> trier.tryTo(s));
+    // attempts at 0, 4, 8 and the last one right at the deadline
+    verify(s, times(4)).get();
+    assertThat(clock.now(), is(10L));
+  }
+
+  @Test
+  void shouldMakeLastAttemptAtTheDeadline() throws LimitExceededException, InterruptedException {
+    @SuppressWarnings("unchecked")
+    Supplier<Object> s = Mockito.mock(Supplier.class);
+    when(s.get()).thenReturn(null).thenReturn(null).thenReturn(null).thenReturn("OK");
+    Trier<Object> trier = new TimeBasedTrier<>(10L, clock, clock, 4L);
+    assertThat(trier.tryTo(s), is("OK"));
+    assertThat(clock.now(), is(10L));
+  }
+
+  @Test
+  void shouldNotStartAttemptThatCannotFinishBeforeTheDeadline() {
+    AtomicInteger attempts = new AtomicInteger();
+    Supplier<Object> s = () -> {
+      attempts.incrementAndGet();
+      clock.sleep(300);
+      return null;
+    };
+    Trier<Object> trier = new TimeBasedTrier<>(1000L, clock, clock, 100L);
+    LimitExceededException thrown = assertThrows(LimitExceededException.class, () -> trier.tryTo(s));
+    // attempts at 0 and 400, the next one at 800 would end at 1100
+    assertThat(attempts.get(), is(2));
+    assertThat(clock.now(), is(700L));
+    assertThat(thrown.getMessage(), containsString("would not finish before the deadline"));
+  }
+
+  @Test
+  void shouldRememberAttemptDurationAcrossCalls() {
+    AtomicInteger attempts = new AtomicInteger();
+    Supplier<Object> s = () -> {
+      attempts.incrementAndGet();
+      clock.sleep(300);
+      return null;
+    };
+    Trier<Object> trier = new TimeBasedTrier<>(500L, clock, clock, 300L);
+    assertThrows(LimitExceededException.class, () -> trier.tryTo(s));
+    assertThat(attempts.get(), is(1));
+    Supplier<Object> fast = () -> {
+      attempts.incrementAndGet();
+      return null;
+    };
+    // the fast attempt lowers the estimate to 262 milliseconds, it does not fit into 200 milliseconds left after sleeping
+    assertThrows(LimitExceededException.class, () -> trier.tryTo(fast));
+    assertThat(attempts.get(), is(2));
+  }
+
+  @Test
+  void successfulAttemptsShouldDecayTheEstimate() throws Exception {
+    Trier<Object> trier = new TimeBasedTrier<>(500L, clock, clock, 100L);
+    Supplier<Object> slow = () -> {
+      clock.sleep(1000);
+      return "OK";
+    };
+    assertThat(trier.tryTo(slow), is("OK"));
+
+    AtomicInteger polls = new AtomicInteger();
+    Supplier<Object> poll = () -> polls.incrementAndGet() % 3 == 0 ? "OK" : null;
+    // the estimate of 1000 milliseconds does not fit into the deadline
+    LimitExceededException thrown = assertThrows(LimitExceededException.class, () -> trier.tryTo(poll));
+    assertThat(thrown.getMessage(), containsString("would not finish before the deadline"));
+
+    Supplier<Object> fast = () -> "OK";
+    for (int i = 0; i < 100; i++) {
+      trier.tryTo(fast);
+    }
+    polls.set(0);
+    assertThat(trier.tryTo(poll), is("OK"));
+    assertThat(polls.get(), is(3));
+  }
+
+  @Test
+  void derivedTrierShouldKeepItsOwnEstimate() throws Exception {
+    Trier<Object> trier = new TimeBasedTrier<>(500L, clock, clock, 100L);
+    Supplier<Object> slow = () -> {
+      clock.sleep(1000);
+      return "OK";
+    };
+    assertThat(trier.tryTo(slow), is("OK"));
+
+    AtomicInteger polls = new AtomicInteger();
+    Supplier<Object> poll = () -> polls.incrementAndGet() % 3 == 0 ? "OK" : null;
+    assertThat(trier.withoutStackTrace().tryTo(poll), is("OK"));
+    assertThat(polls.get(), is(3));
+  }
+
+  @Test
+  void shouldAcceptDurations() throws LimitExceededException, InterruptedException {
+    Supplier<Object> s = () -> "OK";
+    assertThat(TimeBasedTrier.during(Duration.ofSeconds(1)).tryTo(s), is("OK"));
+    assertThat(new TimeBasedTrier<>(Duration.ofSeconds(1), Duration.ofMillis(10)).tryTo(s), is("OK"));
+  }
+
+  @Test
+  void monotonicClockShouldNotGoBackwards() {
+    Clock monotonic = Clock.monotonic();
+    long previous = monotonic.now();
+    for (int i = 0; i < 1000; i++) {
+      long now = monotonic.now();
+      assertThat(now, greaterThanOrEqualTo(previous));
+      previous = now;
+    }
+  }
+
+}
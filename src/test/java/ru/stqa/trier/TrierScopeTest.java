@@ -0,0 +1,226 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TrierScopeTest {
+
+  @Test
+  void shouldNotOpenScopeWithoutDeadline() throws Exception {
+    AtomicReference<TrierScope> seen = new AtomicReference<>();
+    Supplier<Object> action = () -> {
+      seen.set(TrierScope.current());
+      return "OK";
+    };
+    assertThat(new CounterBasedTrier<>(3, 1L).tryTo(action), is("OK"));
+    assertThat(seen.get(), nullValue());
+  }
+
+  @Test
+  void shouldOpenScopeForEachLoopWithinDeadline() throws Exception {
+    AtomicReference<TrierScope> outer = new AtomicReference<>();
+    AtomicReference<TrierScope> inner = new AtomicReference<>();
+    Supplier<Object> innerAction = () -> {
+      inner.set(TrierScope.current());
+      return "OK";
+    };
+    Supplier<Object> outerAction = () -> {
+      outer.set(TrierScope.current());
+      try {
+        return new CounterBasedTrier<>(3, 1L).tryTo(innerAction);
+      } catch (LimitExceededException | InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    };
+    assertThat(TrierScope.current(), nullValue());
+    assertThat(new TimeBasedTrier<>(10_000L, 1L).tryTo(outerAction), is("OK"));
+    assertThat(TrierScope.current(), nullValue());
+    assertThat(outer.get().isNested(), is(false));
+    // the inner loop has no deadline of its own, but inherits the outer one
+    assertThat(inner.get().isNested(), is(true));
+    assertThat(inner.get().remainingNanos(), allOf(greaterThan(0L), lessThanOrEqualTo(TimeUnit.SECONDS.toNanos(10))));
+  }
+
+  @Test
+  void innerScopeShouldEndNoLaterThanOuter() throws Exception {
+    AtomicReference<Long> remaining = new AtomicReference<>();
+    Supplier<Object> innerAction = () -> {
+      remaining.set(TrierScope.current().remainingNanos());
+      return "OK";
+    };
+    Supplier<Object> outerAction = () -> {
+      try {
+        return new TimeBasedTrier<>(10_000L, 1L).tryTo(innerAction);
+      } catch (LimitExceededException | InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    };
+    assertThat(new TimeBasedTrier<>(1000L, 1L).tryTo(outerAction), is("OK"));
+    assertThat(remaining.get(), allOf(greaterThan(0L), lessThanOrEqualTo(TimeUnit.SECONDS.toNanos(1))));
+  }
+
+  @Test
+  void innerTrierShouldGiveUpAtOuterDeadline() {
+    AtomicReference<LimitExceededException> innerFailure = new AtomicReference<>();
+    Supplier<Object> outerAction = () -> {
+      try {
+        return new CounterBasedTrier<>(1000, 50L).tryTo(() -> null);
+      } catch (LimitExceededException e) {
+        innerFailure.set(e);
+        throw new IllegalStateException(e);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    };
+    long started = System.nanoTime();
+    assertThrows(LimitExceededException.class, () -> new TimeBasedTrier<>(300L, 10L).tryTo(outerAction));
+    assertThat(System.nanoTime() - started, lessThan(TimeUnit.SECONDS.toNanos(1)));
+    assertThat(innerFailure.get().getMessage(), containsString("Outer deadline reached"));
+  }
+
+  @Test
+  void innerTrierShouldLeaveRetriesToOuter() {
+    AtomicInteger attempts = new AtomicInteger();
+    Trier<Object> inner = new CounterBasedTrier<>(3, 1L).deferringRetriesToOuter();
+    Runnable innerAction = () -> {
+      attempts.incrementAndGet();
+      throw new NumberFormatException();
+    };
+    Runnable outerAction = () -> {
+      try {
+        inner.tryTo(innerAction);
+      } catch (LimitExceededException | InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    };
+    LimitExceededException thrown = assertThrows(LimitExceededException.class,
+      () -> new ConditionBasedTrier<>(StopCondition.maxAttempts(3).or(StopCondition.maxElapsed(10_000)), Backoff.fixed(1))
+        .ignoring(NumberFormatException.class).tryTo(outerAction));
+    assertThat(attempts.get(), is(3));
+    assertThat(thrown.getCause(), instanceOf(NumberFormatException.class));
+  }
+
+  @Test
+  void innerTrierShouldNotTakeBudgetForRetryBeyondOuterDeadline() {
+    RetryBudget budget = new RetryBudget(1000, 0);
+    AtomicInteger attempts = new AtomicInteger();
+    Trier<Object> inner = new CounterBasedTrier<>(1000, 50L).sharing(budget);
+    Supplier<Object> outerAction = () -> {
+      try {
+        return inner.tryTo(() -> {
+          attempts.incrementAndGet();
+          return null;
+        });
+      } catch (LimitExceededException | InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    };
+    assertThrows(LimitExceededException.class,
+      () -> new ConditionBasedTrier<>(StopCondition.maxAttempts(1).or(StopCondition.maxElapsed(300)), Backoff.fixed(1))
+        .tryTo(outerAction));
+    // the last retry is cut by the outer deadline, no token is taken for it
+    assertThat(budget.getWithdrawnCount(), is((long) attempts.get() - 1));
+  }
+
+  @Test
+  void deferringTrierShouldNotTakeBudget() {
+    RetryBudget budget = new RetryBudget(1000, 0);
+    Trier<Object> inner = new CounterBasedTrier<>(3, 1L).deferringRetriesToOuter().sharing(budget);
+    Supplier<Object> outerAction = () -> {
+      try {
+        return inner.tryTo(() -> null);
+      } catch (LimitExceededException | InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    };
+    assertThrows(LimitExceededException.class,
+      () -> new ConditionBasedTrier<>(StopCondition.maxAttempts(3).or(StopCondition.maxElapsed(10_000)), Backoff.fixed(1))
+        .tryTo(outerAction));
+    assertThat(budget.getWithdrawnCount(), is(0L));
+  }
+
+  @Test
+  void countBasedOuterTrierShouldNotCapNestedAttempts() {
+    AtomicInteger attempts = new AtomicInteger();
+    Trier<Object> inner = new CounterBasedTrier<>(3, 1L).deferringRetriesToOuter();
+    Runnable innerAction = () -> {
+      attempts.incrementAndGet();
+      throw new NumberFormatException();
+    };
+    Runnable outerAction = () -> {
+      try {
+        inner.tryTo(innerAction);
+      } catch (LimitExceededException | InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    };
+    // the outer trier has no deadline and opens no scope, the inner one does not see it
+    assertThrows(LimitExceededException.class, () -> new CounterBasedTrier<>(3, 1L).tryTo(outerAction));
+    assertThat(attempts.get(), is(9));
+  }
+
+  @Test
+  void deferringTrierShouldRetryWhenNotNested() {
+    AtomicInteger attempts = new AtomicInteger();
+    Runnable action = () -> {
+      attempts.incrementAndGet();
+      throw new NumberFormatException();
+    };
+    assertThrows(LimitExceededException.class,
+      () -> new CounterBasedTrier<>(3, 1L).deferringRetriesToOuter().tryTo(action));
+    assertThat(attempts.get(), is(3));
+  }
+
+  @Test
+  void wrappedTaskShouldRunInTheScopeOnAnotherThread() throws Exception {
+    AtomicReference<TrierScope> captured = new AtomicReference<>();
+    AtomicReference<TrierScope> seen = new AtomicReference<>();
+    Runnable action = () -> {
+      captured.set(TrierScope.current());
+      Thread thread = new Thread(TrierScope.current().wrap(() -> seen.set(TrierScope.current())));
+      thread.start();
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    };
+    new TimeBasedTrier<>(10_000L, 1L).tryTo(action);
+    assertThat(captured.get(), notNullValue());
+    assertThat(seen.get(), sameInstance(captured.get()));
+  }
+
+}
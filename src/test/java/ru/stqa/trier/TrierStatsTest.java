@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TrierStatsTest {
+
+  private final TestingClock clock = new TestingClock();
+
+  @Test
+  void shouldNotifyListenerAboutEveryStep() throws LimitExceededException, InterruptedException {
+    TrierListener listener = mock(TrierListener.class);
+    @SuppressWarnings("unchecked")
+    Supplier<Object> s = mock(Supplier.class);
+    NumberFormatException e = new NumberFormatException();
+    when(s.get()).thenThrow(e).thenReturn("").thenReturn("OK");
+
+    new CounterBasedTrier<>(5, clock, clock, Backoff.fixed(3)).reportingTo(listener).tryTo(s);
+
+    InOrder order = inOrder(listener);
+    order.verify(listener).onAttemptStart(s, 1);
+    order.verify(listener).onAttemptFailure(eq(s), eq(1), anyLong(), eq(e), eq(true));
+    order.verify(listener).onSleep(s, 1, TimeUnit.MILLISECONDS.toNanos(3));
+    order.verify(listener).onAttemptStart(s, 2);
+    order.verify(listener).onResultRejected(eq(s), eq(2), anyLong(), eq(""));
+    order.verify(listener).onSleep(s, 2, TimeUnit.MILLISECONDS.toNanos(3));
+    order.verify(listener).onAttemptStart(s, 3);
+    order.verify(listener).onSuccess(eq(s), eq(3), anyLong());
+    order.verifyNoMoreInteractions();
+  }
+
+  @Test
+  void shouldNotifyListenerWhenLimitIsExceeded() {
+    TrierListener listener = mock(TrierListener.class);
+    Runnable r = () -> { throw new NumberFormatException(); };
+    Trier<Object> trier = new CounterBasedTrier<>(2, clock, clock, Backoff.fixed(1)).reportingTo(listener);
+    LimitExceededException thrown = assertThrows(LimitExceededException.class, () -> trier.tryTo(r));
+    inOrder(listener).verify(listener).onLimitExceeded(r, thrown);
+  }
+
+  @Test
+  void shouldNotRepeatSucceededAttemptIfListenerThrows() {
+    TrierListener listener = mock(TrierListener.class);
+    doThrow(new IllegalStateException()).when(listener).onSuccess(any(), anyInt(), anyLong());
+    @SuppressWarnings("unchecked")
+    Supplier<Object> s = mock(Supplier.class);
+    when(s.get()).thenReturn("OK");
+    Trier<Object> trier = new CounterBasedTrier<>(3, clock, clock, Backoff.fixed(1)).reportingTo(listener);
+    assertThrows(IllegalStateException.class, () -> trier.tryTo(s));
+    verify(s, times(1)).get();
+
+    int[] calls = {0};
+    assertThrows(IllegalStateException.class, () -> trier.tryToLong(() -> ++calls[0]));
+    assertThat(calls[0], is(1));
+  }
+
+  @Test
+  void shouldCountAttemptsAndOutcomes() throws LimitExceededException, InterruptedException {
+    TrierStats stats = new TrierStats();
+    Trier<Object> trier = new CounterBasedTrier<>(3, clock, clock, Backoff.fixed(2)).reportingTo(stats);
+    int[] calls = {0};
+    trier.tryTo(() -> ++calls[0] < 2 ? null : "OK");
+    assertThrows(LimitExceededException.class, () -> trier.tryTo(() -> { throw new NumberFormatException(); }));
+
+    assertThat(stats.getAttempts(), is(5L));
+    assertThat(stats.getSuccesses(), is(1L));
+    assertThat(stats.getRejectedResults(), is(1L));
+    assertThat(stats.getIgnoredExceptions(), is(3L));
+    assertThat(stats.getSleeps(), is(3L));
+    assertThat(stats.getSleepDurations().getSum(), is(TimeUnit.MILLISECONDS.toNanos(6)));
+    assertThat(stats.getLimitExceeded(), is(1L));
+    assertThat(stats.getMeanAttemptsPerSuccess(), is(2.0));
+    assertThat(stats.getAttemptDurations().getCount(), is(5L));
+  }
+
+  @Test
+  void histogramShouldReportPercentilesWithinBucketPrecision() {
+    Histogram histogram = new Histogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i);
+    }
+    assertThat(histogram.getCount(), is(1000L));
+    assertThat(histogram.getPercentile(0), is(1L));
+    assertThat(histogram.getPercentile(50), is(511L));
+    assertThat(histogram.getPercentile(100), is(1023L));
+    assertThat(histogram.getMean(), is(500.5));
+  }
+
+  @Test
+  void histogramBucketsShouldCoverAllValues() {
+    for (long value : new long[] {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE}) {
+      int bucket = Histogram.bucketOf(value);
+      assertThat(value <= Histogram.upperBoundOf(bucket), is(true));
+      assertThat(bucket == 0 || value > Histogram.upperBoundOf(bucket - 1), is(true));
+    }
+  }
+
+  @Test
+  void shouldBeAvailableViaJmx() throws Exception {
+    TrierStats stats = new TrierStats();
+    stats.onAttemptStart("action", 1);
+    ObjectName name = stats.register("test");
+    try {
+      assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Attempts"), is(1L));
+    } finally {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017 Alexei Barantsev
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package ru.stqa.trier;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WakeUpSignalTest {
+
+  private final WakeUpSignal signal = new WakeUpSignal();
+
+  @Test
+  void signalShouldWakeUpSleepingTrier() throws Exception {
+    AtomicBoolean ready = new AtomicBoolean();
+    Trier<Object> trier = new TimeBasedTrier<>(60000L, 10000L).wakingUpOn(signal);
+    CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> {
+      try {
+        trier.tryToBoolean(ready::get);
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    Thread.sleep(50);
+    ready.set(true);
+    signal.signal();
+    waiting.get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void signalDuringAttemptShouldSkipTheSleep() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    Trier<Object> trier = new CounterBasedTrier<>(2, 10000L).wakingUpOn(signal);
+    long started = System.nanoTime();
+    assertThat(trier.tryTo(() -> {
+      if (attempts.incrementAndGet() == 1) {
+        signal.signal();
+        return null;
+      }
+      return "OK";
+    }), is("OK"));
+    assertThat(System.nanoTime() - started, lessThan(TimeUnit.SECONDS.toNanos(5)));
+  }
+
+  @Test
+  void trierShouldSleepTheIntervalWithoutSignals() {
+    Trier<Object> trier = new CounterBasedTrier<>(2, 50L).wakingUpOn(signal);
+    long started = System.nanoTime();
+    assertThrows(LimitExceededException.class, () -> trier.tryTo(() -> null));
+    assertThat(System.nanoTime() - started, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50)));
+  }
+
+  @Test
+  void shouldWorkAsSleeper() throws Exception {
+    CompletableFuture<Void> sleeping = CompletableFuture.runAsync(() -> {
+      try {
+        signal.sleep(60000);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    Thread.sleep(50);
+    signal.signal();
+    sleeping.get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void shouldBeInterruptible() {
+    Thread.currentThread().interrupt();
+    assertThrows(InterruptedException.class, () -> signal.sleep(60000));
+  }
+
+}